@@ -1,5 +1,31 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 // INTERFACE - Playable
 interface Playable {
@@ -20,70 +46,296 @@ class InsufficientBalanceException extends Exception {
     }
 }
 
-// TILE CLASS - Represents individual grid cells
-class Tile {
-    private boolean isMine;
-    private boolean isRevealed;
-    private char displayChar;
+class SessionClosedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
 
-    // Default constructor
-    public Tile() {
-        this.isMine = false;
-        this.isRevealed = false;
-        this.displayChar = '?';
+    public SessionClosedException(String message) {
+        super(message);
     }
+}
 
-    // Parameterized constructor
-    public Tile(boolean isMine) {
-        this.isMine = isMine;
-        this.isRevealed = false;
-        this.displayChar = '?';
+// SESSION I/O - Where a game session reads player input and writes its output
+interface SessionIO {
+    String readLine(); // null once the input is closed
+
+    void print(String text);
+
+    void println(String text);
+
+    void println();
+}
+
+// CONSOLE SESSION - Keyboard and terminal of the local player
+class ConsoleSessionIO implements SessionIO {
+    private final Scanner scanner = new Scanner(System.in);
+
+    @Override
+    public String readLine() {
+        return this.scanner.hasNextLine() ? this.scanner.nextLine() : null;
     }
 
-    // Getters and Setters - ENCAPSULATION
-    public boolean isMine() {
-        return this.isMine;
+    @Override
+    public void print(String text) {
+        System.out.print(text);
+    }
+
+    @Override
+    public void println(String text) {
+        System.out.println(text);
+    }
+
+    @Override
+    public void println() {
+        System.out.println();
+    }
+}
+
+// SOCKET SESSION - Line protocol for a remote player
+// Output is buffered and sent when the game waits for input; a pending prompt is terminated
+// with a newline so line-oriented clients receive it
+class SocketSessionIO implements SessionIO, Closeable {
+    private static final int BUFFER_CHARS = 2048;
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final Writer writer;
+    private boolean atLineStart = true;
+
+    public SocketSessionIO(Socket socket) throws IOException {
+        this.socket = socket;
+        this.reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_CHARS);
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    @Override
+    public String readLine() {
+        try {
+            if (!this.atLineStart) {
+                this.writer.write('\n');
+                this.atLineStart = true;
+            }
+            this.writer.flush();
+            return this.reader.readLine();
+        } catch (IOException e) {
+            return null; // a broken connection ends the session like a closed input
+        }
+    }
+
+    @Override
+    public void print(String text) {
+        write(text);
+        if (!text.isEmpty()) {
+            this.atLineStart = text.charAt(text.length() - 1) == '\n';
+        }
+    }
+
+    @Override
+    public void println(String text) {
+        write(text);
+        write("\n");
+        this.atLineStart = true;
+    }
+
+    @Override
+    public void println() {
+        println("");
+    }
+
+    private void write(String text) {
+        try {
+            this.writer.write(text);
+        } catch (IOException e) {
+            // the next readLine() reports the broken connection
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            // the client is already gone
+        }
+        this.socket.close();
+    }
+}
+
+// LEDGER - Account balances in paise, reserved and credited with lock-free CAS
+class Ledger {
+    // Each account owns a full cache line so hot accounts do not false-share with their neighbours
+    private static final int SLOT_LONGS = 8;
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_ACCOUNTS = 1 << PAGE_SHIFT;
+    private static final int MAX_PAGES = 1 << 16;
+    private static final Ledger SHARED = new Ledger();
+
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private final AtomicInteger nextAccount = new AtomicInteger();
+
+    public static Ledger shared() {
+        return SHARED;
+    }
+
+    public int openAccount(long openingPaise) {
+        if (openingPaise < 0) {
+            throw new IllegalArgumentException("Opening balance cannot be negative");
+        }
+        int account = this.nextAccount.getAndIncrement();
+        if (account >= MAX_PAGES * PAGE_ACCOUNTS) {
+            throw new IllegalStateException("Ledger is full");
+        }
+        page(account).set(slot(account), openingPaise);
+        return account;
+    }
+
+    public long balance(int account) {
+        return page(account).get(slot(account));
     }
 
-    public void setMine(boolean mine) {
-        this.isMine = mine;
+    // Check-and-deduct in one step: the stake is either taken in full or not at all
+    public boolean reserve(int account, long paise) {
+        AtomicLongArray page = page(account);
+        int slot = slot(account);
+        long current = page.get(slot);
+        while (current >= paise) {
+            long witness = page.compareAndExchange(slot, current, current - paise);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+        return false;
+    }
+
+    public void credit(int account, long paise) {
+        page(account).getAndAdd(slot(account), paise);
+    }
+
+    public void set(int account, long paise) {
+        page(account).set(slot(account), paise);
     }
 
-    public boolean isRevealed() {
-        return this.isRevealed;
+    private AtomicLongArray page(int account) {
+        int index = account >>> PAGE_SHIFT;
+        AtomicLongArray page = this.pages.get(index);
+        if (page == null) {
+            AtomicLongArray created = new AtomicLongArray(PAGE_ACCOUNTS * SLOT_LONGS);
+            page = this.pages.compareAndExchange(index, null, created);
+            if (page == null) {
+                page = created;
+            }
+        }
+        return page;
     }
 
-    public void reveal() {
-        this.isRevealed = true;
-        this.displayChar = this.isMine ? 'X' : 'D';
+    private static int slot(int account) {
+        return (account & (PAGE_ACCOUNTS - 1)) * SLOT_LONGS;
     }
+}
+
+// LEDGER BENCHMARK - Reserve/credit throughput as threads are added, over spread or hot accounts
+class LedgerBenchmark {
+    private static final long OPENING_PAISE = 100_000_00L;
+
+    // Usage: ledger-bench [max threads] [accounts] [millis per step]
+    public static void run(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        Ledger ledger = new Ledger();
+        int[] accounts = new int[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = ledger.openAccount(OPENING_PAISE);
+        }
+
+        System.out.println("Ledger benchmark: " + accountCount + " account(s), " + millis + " ms per step");
+        System.out.println(String.format("%-8s %14s %9s %9s", "Threads", "Ops/sec", "Scaling", "Declined"));
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long[] ops = new long[threads];
+            long[] declined = new long[threads];
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                SplittableRandom random = new SplittableRandom(t);
+                workers[t] = new Thread(() -> {
+                    long done = 0;
+                    long refused = 0;
+                    while (running.get()) {
+                        int account = accounts[random.nextInt(accounts.length)];
+                        long stake = 1 + random.nextInt(10_000);
+                        if (ledger.reserve(account, stake)) {
+                            ledger.credit(account, stake);
+                        } else {
+                            refused++;
+                        }
+                        done++;
+                    }
+                    ops[worker] = done;
+                    declined[worker] = refused;
+                });
+            }
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            try {
+                Thread.sleep(millis);
+                running.set(false);
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                running.set(false);
+                System.out.println("Benchmark interrupted");
+                return;
+            }
+
+            double opsPerSec = Arrays.stream(ops).sum() * 1000.0 / millis;
+            if (baseline == 0) {
+                baseline = opsPerSec;
+            }
+            System.out.println(String.format("%-8d %14.0f %8.2fx %9d",
+                    threads, opsPerSec, opsPerSec / baseline, Arrays.stream(declined).sum()));
+        }
 
-    public char getDisplayChar() {
-        return this.isRevealed ? this.displayChar : '?';
+        // Every reserve was credited straight back, so no paise may have been created or lost
+        long total = 0;
+        for (int account : accounts) {
+            total += ledger.balance(account);
+        }
+        long expected = OPENING_PAISE * accountCount;
+        System.out.println(total == expected ? "Ledger balanced: " + total + " paise"
+                : "LEDGER MISMATCH: expected " + expected + " paise, found " + total);
     }
 }
 
 // PLAYER CLASS
 class Player {
     private String name;
-    private double balance;
+    private final Ledger ledger;
+    private final int account;
 
     // Default constructor
     public Player() {
-        this.name = "Player";
-        this.balance = 1000.0;
+        this("Player", 1000.0);
     }
 
     // Parameterized constructor
     public Player(String name, double balance) {
         this.name = name;
-        this.balance = balance;
+        this.ledger = Ledger.shared();
+        this.account = this.ledger.openAccount(toPaise(balance));
     }
 
-    // Copy constructor
+    // Copy constructor - opens a separate account with the same balance
     public Player(Player other) {
         this.name = other.name;
-        this.balance = other.balance;
+        this.ledger = other.ledger;
+        this.account = this.ledger.openAccount(other.getBalancePaise());
     }
 
     // Getters and Setters - ENCAPSULATION
@@ -96,618 +348,7655 @@ class Player {
     }
 
     public double getBalance() {
-        return this.balance;
+        return this.getBalancePaise() / 100.0;
+    }
+
+    public long getBalancePaise() {
+        return this.ledger.balance(this.account);
     }
 
     public void setBalance(double balance) {
-        this.balance = balance;
+        this.setBalancePaise(toPaise(balance));
+    }
+
+    public void setBalancePaise(long paise) {
+        this.ledger.set(this.account, paise);
     }
 
     // Methods using 'this' keyword
     public void addBalance(double amount) {
-        this.balance += amount;
+        this.creditPaise(toPaise(amount));
+    }
+
+    public void creditPaise(long paise) {
+        this.ledger.credit(this.account, paise);
+    }
+
+    // Takes the stake only if the balance covers it, atomically
+    public boolean reserveStake(long paise) {
+        return this.ledger.reserve(this.account, paise);
     }
 
-    public void deductBalance(double amount) {
-        this.balance -= amount;
+    public static long toPaise(double rupees) {
+        return Math.round(rupees * 100);
     }
 }
 
-// BOARD CLASS
-class Board {
-    private Tile[][] grid;
-    private int size;
-    private int mineCount;
+// SPLITMIX64 - Small reseedable generator; one per board, so replaying a round seed allocates nothing
+final class SplitMix64 implements RandomGenerator {
+    private long state;
 
-    // Default constructor
-    public Board() {
-        this.size = 5;
-        this.mineCount = 3;
-        this.grid = new Tile[size][size];
-        initializeGrid();
+    public SplitMix64(long seed) {
+        this.state = seed;
     }
 
-    // Parameterized constructor
-    public Board(int size, int mineCount) {
-        this.size = size;
-        this.mineCount = mineCount;
-        this.grid = new Tile[size][size];
-        initializeGrid();
+    public void reseed(long seed) {
+        this.state = seed;
     }
 
-    // Initialize grid - Array of Objects
-    private void initializeGrid() {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                this.grid[i][j] = new Tile();
-            }
-        }
+    @Override
+    public long nextLong() {
+        long z = (this.state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
+}
 
-    // Place mines using N-Queens approach
-    public void placeMines() {
-        Random random = new Random();
-        int choice = random.nextInt(3) + 1; // Randomly select 1, 2, or 3
-        
-        System.out.println("\nRandomly selecting mine placement algorithm...");
-        
-        switch (choice) {
-            case 1:
-                System.out.println("Selected: N-Queens Algorithm");
-                placeMinesNQueens();
-                break;
-            case 2:
-                System.out.println("Selected: Minimum Distance Algorithm");
-                placeMinesMinDistance();
-                break;
-            case 3:
-                System.out.println("Selected: Random Placement");
-                placeMinesRandom();
-                break;
-        }
+// RNG SERVICE - Every random stream in the process is split from one master seed
+// Each session or worker thread gets its own stream, so drawing round seeds never contends
+class RngService {
+    private static final RngService SHARED = new RngService(Long.getLong("minestake.seed", System.nanoTime()));
+
+    private final long masterSeed;
+    private final SplittableRandom master;
+    private final ThreadLocal<SplittableRandom> threadStreams = ThreadLocal.withInitial(this::newStream);
+
+    public RngService(long masterSeed) {
+        this.masterSeed = masterSeed;
+        this.master = new SplittableRandom(masterSeed);
     }
-    
-    // METHOD 1: N-Queens Algorithm
-    private void placeMinesNQueens() {
-        Random random = new Random();
-        
-        // Step 1: Place first mine randomly
-        int firstRow = random.nextInt(this.size);
-        int firstCol = random.nextInt(this.size);
-        this.grid[firstRow][firstCol].setMine(true);
-        
-        // Step 2: Use N-Queens algorithm for remaining mines
-        int remainingMines = this.mineCount - 1;
-        ArrayList<int[]> placedMines = new ArrayList<>();
-        placedMines.add(new int[]{firstRow, firstCol});
-        placeRemainingMinesNQueens(remainingMines, 0, placedMines);
+
+    // -Dminestake.seed fixes the master seed; otherwise it comes from the clock
+    public static RngService shared() {
+        return SHARED;
     }
-    
-    // N-Queens recursive backtracking algorithm
-    private boolean placeRemainingMinesNQueens(int minesToPlace, int row, ArrayList<int[]> placedMines) {
-        if (minesToPlace == 0) {
-            return true; // All mines placed successfully
-        }
-        
-        if (row >= this.size) {
-            return false; // Reached end of board, backtrack
-        }
-        
-        // Try placing mine in each column of current row
-        for (int col = 0; col < this.size; col++) {
-            if (isSafeNQueens(row, col, placedMines) && !this.grid[row][col].isMine()) {
-                // Place mine
-                this.grid[row][col].setMine(true);
-                placedMines.add(new int[]{row, col});
-                
-                // Recursively place remaining mines
-                if (placeRemainingMinesNQueens(minesToPlace - 1, row + 1, placedMines)) {
-                    return true;
-                }
-                
-                // Backtrack if placement didn't work
-                this.grid[row][col].setMine(false);
-                placedMines.remove(placedMines.size() - 1);
-            }
-        }
-        
-        // Try next row without placing in current row
-        return placeRemainingMinesNQueens(minesToPlace, row + 1, placedMines);
+
+    public long getMasterSeed() {
+        return this.masterSeed;
     }
-    
-    // Check if position is safe according to N-Queens rules
-    private boolean isSafeNQueens(int row, int col, ArrayList<int[]> placedMines) {
-        for (int[] mine : placedMines) {
-            int placedRow = mine[0];
-            int placedCol = mine[1];
-            
-            // Check if in same row
-            if (placedRow == row) {
-                return false;
-            }
-            
-            // Check if in same column
-            if (placedCol == col) {
-                return false;
-            }
-            
-            // Check if in same diagonal
-            if (Math.abs(placedRow - row) == Math.abs(placedCol - col)) {
-                return false;
-            }
-        }
-        return true;
+
+    // An independent stream for one session or worker
+    public synchronized SplittableRandom newStream() {
+        return this.master.split();
     }
-    
-    // METHOD 2: Minimum Distance Algorithm
-    private void placeMinesMinDistance() {
-        ArrayList<int[]> placedMines = new ArrayList<>();
-        int minDistance = Math.max(1, size / 3); // Minimum distance between mines
-        
-        if (placeMinesWithMinDistance(mineCount, minDistance, placedMines)) {
-            System.out.println("(Minimum distance between mines: " + minDistance + " tiles)");
-        } else {
-            // Fallback to random if backtracking fails
-            System.out.println("Min distance placement failed, using random...");
-            placeMinesRandom();
-        }
+
+    // Seed for the next round placed on the calling thread
+    public long nextRoundSeed() {
+        return this.threadStreams.get().nextLong();
     }
-    
-    private boolean placeMinesWithMinDistance(int minesToPlace, int minDist, ArrayList<int[]> placedMines) {
-        if (minesToPlace == 0) {
-            return true; // All mines placed successfully
-        }
-        
-        Random random = new Random();
-        int maxAttempts = size * size * 10;
-        
-        // Try random positions
-        for (int attempt = 0; attempt < maxAttempts; attempt++) {
-            int row = random.nextInt(size);
-            int col = random.nextInt(size);
-            
-            if (!grid[row][col].isMine() && hasMinimumDistance(row, col, placedMines, minDist)) {
-                // Place mine
-                grid[row][col].setMine(true);
-                placedMines.add(new int[]{row, col});
-                
-                // Recursively place remaining mines
-                if (placeMinesWithMinDistance(minesToPlace - 1, minDist, placedMines)) {
-                    return true;
-                }
-                
-                // Backtrack if placement didn't work
-                grid[row][col].setMine(false);
-                placedMines.remove(placedMines.size() - 1);
-            }
-        }
-        
-        return false;
+
+    public static String formatSeed(long seed) {
+        String hex = Long.toHexString(seed);
+        return "0".repeat(16 - hex.length()) + hex;
     }
-    
-    private boolean hasMinimumDistance(int row, int col, ArrayList<int[]> placedMines, int minDist) {
-        for (int[] mine : placedMines) {
-            // Manhattan distance: |x1-x2| + |y1-y2|
-            int distance = Math.abs(row - mine[0]) + Math.abs(col - mine[1]);
-            if (distance < minDist) {
-                return false;
-            }
-        }
-        return true;
+
+    public static long parseSeed(String text) {
+        return Long.parseUnsignedLong(text, 16);
     }
-    
-    // METHOD 3: Random Placement
-    private void placeMinesRandom() {
-        Random random = new Random();
-        int placed = 0;
-        
-        while (placed < mineCount) {
-            int row = random.nextInt(size);
-            int col = random.nextInt(size);
-            
-            if (!grid[row][col].isMine()) {
-                grid[row][col].setMine(true);
-                placed++;
+}
+
+// PLACEMENT ALGORITHM - The mine placement strategies a Board supports
+enum PlacementAlgorithm {
+    NQUEENS("N-Queens Algorithm"),
+    MIN_DISTANCE("Minimum Distance Algorithm"),
+    RANDOM("Random Placement");
+
+    private final String displayName;
+
+    PlacementAlgorithm(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return this.displayName;
+    }
+}
+
+// N-QUEENS TABLE - Every placement of k non-attacking mines on an NxN board, indexed by cell
+class NQueensTable {
+    private static final int MAX_TABLE_SIZE = 16;
+    private static final int MAX_ENTRIES = 1 << 21;
+    private static final AtomicReferenceArray<Optional<NQueensTable>> CACHE =
+            new AtomicReferenceArray<>((MAX_TABLE_SIZE + 1) * (MAX_TABLE_SIZE + 1));
+
+    private final int queens;
+    private final int solutionCount;
+    private final int[] solutionCells;  // 'queens' cell indices per solution
+    private final int[] cellOffsets;    // solutions containing cell c: cellSolutions[cellOffsets[c]..cellOffsets[c + 1])
+    private final int[] cellSolutions;
+
+    private NQueensTable(int size, int queens, int[] solutionCells, int solutionCount) {
+        this.queens = queens;
+        this.solutionCount = solutionCount;
+        this.solutionCells = solutionCells;
+
+        int cells = size * size;
+        this.cellOffsets = new int[cells + 1];
+        for (int i = 0; i < solutionCount * queens; i++) {
+            this.cellOffsets[solutionCells[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            this.cellOffsets[c + 1] += this.cellOffsets[c];
+        }
+        this.cellSolutions = new int[solutionCount * queens];
+        int[] next = Arrays.copyOf(this.cellOffsets, cells);
+        for (int s = 0; s < solutionCount; s++) {
+            for (int q = 0; q < queens; q++) {
+                this.cellSolutions[next[solutionCells[s * queens + q]]++] = s;
             }
         }
     }
 
-    // Display the board
-    public void displayBoard() {
-        // Print column headers
-        System.out.print("\n   ");
-        for (int i = 1; i <= size; i++) {
-            System.out.print(String.format("%4d  ", i));
+    // Lazily built and cached per (size, queens); null when the board is too large to tabulate
+    public static NQueensTable forBoard(int size, int queens) {
+        if (size > MAX_TABLE_SIZE || queens < 1 || queens > size) {
+            return null;
         }
-        System.out.println();
-        
-        // Print rows
-        for (int i = 0; i < size; i++) {
-            System.out.print(String.format("%2d ", (i + 1)));
-            for (int j = 0; j < size; j++) {
-                char display = this.grid[i][j].getDisplayChar();
-                System.out.print("[ " + display + " ]");
+        int key = size * (MAX_TABLE_SIZE + 1) + queens;
+        Optional<NQueensTable> table = CACHE.get(key);
+        if (table == null) {
+            synchronized (CACHE) {
+                table = CACHE.get(key);
+                if (table == null) {
+                    table = Optional.ofNullable(build(size, queens));
+                    CACHE.set(key, table);
+                }
             }
-            System.out.println();
         }
-        System.out.println();
+        return table.orElse(null);
     }
 
-    // Reveal a tile
-    public boolean revealTile(int row, int col) {
-        if (row < 0 || row >= size || col < 0 || col >= size) {
-            return false;
+    // Uniform pick among the solutions containing firstCell, or among all solutions if none does (-1 if empty)
+    public int pickSolution(int firstCell, RandomGenerator random) {
+        int from = this.cellOffsets[firstCell];
+        int to = this.cellOffsets[firstCell + 1];
+        if (from < to) {
+            return this.cellSolutions[from + random.nextInt(to - from)];
         }
-        this.grid[row][col].reveal();
-        return !this.grid[row][col].isMine();
+        return this.solutionCount == 0 ? -1 : random.nextInt(this.solutionCount);
     }
 
-    public boolean isTileRevealed(int row, int col) {
-        return this.grid[row][col].isRevealed();
+    public int getCell(int solution, int index) {
+        return this.solutionCells[solution * this.queens + index];
     }
 
-    public int getSize() {
-        return this.size;
+    private static NQueensTable build(int size, int queens) {
+        Enumerator enumerator = new Enumerator(size, queens);
+        if (!enumerator.enumerate(0, 0, 0L, 0L, 0L)) {
+            return null; // more solutions than we are willing to keep in memory
+        }
+        return new NQueensTable(size, queens, enumerator.cells, enumerator.count);
     }
-}
 
-// THREAD 1 - Loading Animation (extends Thread)
-class LoadingThread extends Thread {
-    private String message;
+    // Row-by-row bitmask enumeration; each row holds at most one mine
+    private static class Enumerator {
+        private final int size;
+        private final int queens;
+        private final int[] current;
+        private int[] cells = new int[64];
+        private int count;
 
-    public LoadingThread(String message) {
-        this.message = message;
-    }
+        Enumerator(int size, int queens) {
+            this.size = size;
+            this.queens = queens;
+            this.current = new int[queens];
+        }
 
-    @Override
-    public void run() {
-        try {
-            System.out.print(this.message);
-            for (int i = 0; i < 3; i++) {
-                Thread.sleep(500);
-                System.out.print(".");
+        boolean enumerate(int row, int placed, long cols, long diags, long antiDiags) {
+            if (placed == queens) {
+                if ((count + 1) * queens > MAX_ENTRIES) {
+                    return false;
+                }
+                if ((count + 1) * queens > cells.length) {
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                System.arraycopy(current, 0, cells, count * queens, queens);
+                count++;
+                return true;
             }
-            System.out.println(" Done!");
-            Thread.sleep(300);
-        } catch (InterruptedException e) {
-            System.out.println("Loading interrupted!");
+            if (size - row < queens - placed) {
+                return true; // not enough rows left
+            }
+            for (int col = 0; col < size; col++) {
+                long c = 1L << col;
+                long d = 1L << (row + col);
+                long a = 1L << (row - col + size - 1);
+                if ((cols & c) == 0 && (diags & d) == 0 && (antiDiags & a) == 0) {
+                    current[placed] = row * size + col;
+                    if (!enumerate(row + 1, placed + 1, cols | c, diags | d, antiDiags | a)) {
+                        return false;
+                    }
+                }
+            }
+            return enumerate(row + 1, placed, cols, diags, antiDiags); // leave this row empty
         }
     }
 }
 
-// THREAD 2 - Status Updates (implements Runnable)
-class StatusUpdateRunnable implements Runnable {
-    private String status;
+// GAME BOARD - What a round needs from a board, whether it is stored densely (Board) or sparsely (SparseBoard)
+// Cells are numbered row * size + col
+interface GameBoard {
+    // True if the tile was safe
+    boolean revealTile(int row, int col);
 
-    public StatusUpdateRunnable(String status) {
-        this.status = status;
-    }
+    boolean isTileRevealed(int row, int col);
 
-    @Override
-    public void run() {
-        try {
-            Thread.sleep(100);
-            System.out.println(">> " + this.status);
-        } catch (InterruptedException e) {
-            System.out.println("Status update interrupted!");
+    // Reveals cells in order and stops at the first mine; returns how many were revealed, the mine included
+    default int revealCells(int[] cells, int count) {
+        int size = getSize();
+        for (int i = 0; i < count; i++) {
+            if (!revealTile(cells[i] / size, cells[i] % size)) {
+                return i + 1;
+            }
         }
+        return count;
     }
-}
 
-// ABSTRACT BASE CLASS - AbstractGame (INHERITANCE)
-abstract class AbstractGame {
-    protected Player player;
-    protected Scanner scanner;
+    // Board.CELL_HIDDEN, CELL_SAFE or CELL_MINE, as the player currently sees the cell
+    int getCellState(int cell);
 
-    public AbstractGame(Player player) {
-        this.player = player;
-        this.scanner = new Scanner(System.in);
-    }
+    // -1 until a tile has been revealed
+    int getLastRevealedCell();
 
-    // Abstract method to be overridden
-    public abstract void playRound() throws InvalidBetException, InsufficientBalanceException;
+    int countRemainingSafeTiles();
 
-    // Concrete method
-    public void displayBalance() {
-        System.out.println("Current Balance: Rs." + this.player.getBalance());
-    }
-}
+    void describePlacement(SessionIO out);
 
-// MINESTAKE GAME CLASS - POLYMORPHISM (method overriding)
-class MineStakeGame extends AbstractGame implements Playable {
-    private Board board;
-    private double currentBet;
-    private int numberOfMines;
-    private double multiplier;
-    private int safeTilesRevealed;
+    long getRoundSeed();
 
-    // Constructor
-    public MineStakeGame(Player player) {
-        super(player);
-        this.multiplier = 1.0;
-        this.safeTilesRevealed = 0;
-    }
+    int getMineCount();
 
-    // Implementing interface method
-    @Override
-    public void startGame() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("         WELCOME TO MINESTAKE GAME");
-        System.out.println("=".repeat(50));
+    int getCellCount();
 
-        boolean playAgain = true;
+    int getSize();
+}
 
-        while (playAgain && player.getBalance() > 0) {
-            try {
-                playRound();
-            } catch (InvalidBetException | InsufficientBalanceException e) {
-                System.out.println("Error: " + e.getMessage());
-                continue;
-            }
+// BOARD CLASS - Mine and revealed state stored as packed bit masks
+class Board implements GameBoard {
+    private int size;
+    private int mineCount;
+    private int cellCount;
 
-            if (player.getBalance() <= 0) {
-                System.out.println("\nGame Over! You're out of balance.");
-                break;
+    // Boards up to 8x8 fit in a single long per mask
+    private long mineBits;
+    private long revealedBits;
+
+    // Larger boards use one bit per cell spread over a long[] (null for small boards)
+    private long[] mineWords;
+    private long[] revealedWords;
+    private int lastRevealedCell = -1;
+
+    // Scratch mask of cells the min-distance placer may no longer use
+    private long[] forbiddenWords;
+
+    // Node budget for the N-Queens search on boards too large to tabulate
+    private static final int NQUEENS_SEARCH_BUDGET = 100_000;
+    private int searchBudget;
+
+    // Algorithm picked for the current layout and the one that actually placed it
+    private PlacementAlgorithm requestedAlgorithm = PlacementAlgorithm.RANDOM;
+    private PlacementAlgorithm usedAlgorithm = PlacementAlgorithm.RANDOM;
+
+    // Seed the current layout was generated from; the same seed always gives the same layout
+    private final SplitMix64 roundRandom = new SplitMix64(0L);
+    private long roundSeed;
+
+    public static final int CELL_HIDDEN = 0;
+    public static final int CELL_SAFE = 1;
+    public static final int CELL_MINE = 2;
+
+    // Default constructor
+    public Board() {
+        this(5, 3);
+    }
+
+    // Parameterized constructor
+    public Board(int size, int mineCount) {
+        this.size = size;
+        this.mineCount = mineCount;
+        this.cellCount = size * size;
+        this.forbiddenWords = new long[(this.cellCount + 63) >>> 6];
+        if (this.cellCount > 64) {
+            int words = (this.cellCount + 63) >>> 6;
+            this.mineWords = new long[words];
+            this.revealedWords = new long[words];
+        }
+    }
+
+    // Bit helpers - a cell index is row * size + col
+    private boolean isMineAt(int cell) {
+        if (this.mineWords == null) {
+            return (this.mineBits >>> cell & 1L) != 0;
+        }
+        return (this.mineWords[cell >>> 6] >>> cell & 1L) != 0;
+    }
+
+    private void setMineAt(int cell, boolean mine) {
+        if (this.mineWords == null) {
+            if (mine) this.mineBits |= 1L << cell;
+            else this.mineBits &= ~(1L << cell);
+        } else {
+            if (mine) this.mineWords[cell >>> 6] |= 1L << cell;
+            else this.mineWords[cell >>> 6] &= ~(1L << cell);
+        }
+    }
+
+    private boolean isRevealedAt(int cell) {
+        if (this.revealedWords == null) {
+            return (this.revealedBits >>> cell & 1L) != 0;
+        }
+        return (this.revealedWords[cell >>> 6] >>> cell & 1L) != 0;
+    }
+
+    private void setRevealedAt(int cell) {
+        if (this.revealedWords == null) {
+            this.revealedBits |= 1L << cell;
+        } else {
+            this.revealedWords[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    // Clear mines and reveals so the board can be reused for another round
+    public void reset() {
+        this.mineBits = 0L;
+        this.revealedBits = 0L;
+        this.lastRevealedCell = -1;
+        if (this.mineWords != null) {
+            Arrays.fill(this.mineWords, 0L);
+            Arrays.fill(this.revealedWords, 0L);
+        }
+    }
+
+    private void clearMines() {
+        this.mineBits = 0L;
+        if (this.mineWords != null) {
+            Arrays.fill(this.mineWords, 0L);
+        }
+    }
+
+    // Pick one of the three algorithms and place mines silently, all driven by the round seed
+    public void placeMinesWithRandomAlgorithm(long seed) {
+        this.roundSeed = seed;
+        this.roundRandom.reseed(seed);
+        long start = GameMetrics.start();
+        this.requestedAlgorithm = PlacementAlgorithm.values()[this.roundRandom.nextInt(3)];
+        this.usedAlgorithm = placeMines(this.requestedAlgorithm, this.roundRandom);
+        GameMetrics.recordPlacement(this.requestedAlgorithm, this.usedAlgorithm, start);
+    }
+
+    // Rebuilds the layout of a logged round bit for bit
+    public static Board replay(int mines, long seed) {
+        Board board = new Board(mines, mines);
+        board.placeMinesWithRandomAlgorithm(seed);
+        return board;
+    }
+
+    @Override
+    public long getRoundSeed() {
+        return this.roundSeed;
+    }
+
+    // Tell the player which algorithm placed the mines and whether it fell back to random
+    @Override
+    public void describePlacement(SessionIO out) {
+        out.println("\nRandomly selecting mine placement algorithm...");
+        out.println("Selected: " + this.requestedAlgorithm.getDisplayName());
+
+        if (this.requestedAlgorithm == PlacementAlgorithm.NQUEENS && this.usedAlgorithm != this.requestedAlgorithm) {
+            out.println("No N-Queens layout fits this board, using random...");
+        }
+        if (this.requestedAlgorithm == PlacementAlgorithm.MIN_DISTANCE) {
+            if (this.usedAlgorithm == this.requestedAlgorithm) {
+                out.println("(Minimum distance between mines: " + getMinDistance() + " tiles)");
+            } else {
+                out.println("Min distance placement failed, using random...");
+            }
+        }
+    }
+
+    // Place mines silently - returns the algorithm actually used (min distance may fall back to random)
+    public PlacementAlgorithm placeMines(PlacementAlgorithm algorithm, RandomGenerator random) {
+        switch (algorithm) {
+            case NQUEENS:
+                if (placeMinesNQueens(random)) {
+                    return PlacementAlgorithm.NQUEENS;
+                }
+                placeMinesRandom(random);
+                return PlacementAlgorithm.RANDOM;
+            case MIN_DISTANCE:
+                if (placeMinesMinDistance(random)) {
+                    return PlacementAlgorithm.MIN_DISTANCE;
+                }
+                placeMinesRandom(random);
+                return PlacementAlgorithm.RANDOM;
+            default:
+                placeMinesRandom(random);
+                return PlacementAlgorithm.RANDOM;
+        }
+    }
+    
+    // METHOD 1: N-Queens Algorithm - no two mines share a row, column or diagonal
+    private boolean placeMinesNQueens(RandomGenerator random) {
+        clearMines();
+        
+        // Step 1: Pick the first mine randomly
+        int firstCell = random.nextInt(this.cellCount);
+        
+        // Step 2: O(1) pick among the tabulated layouts that contain the first mine
+        NQueensTable table = NQueensTable.forBoard(this.size, this.mineCount);
+        if (table != null) {
+            int solution = table.pickSolution(firstCell, random);
+            if (solution < 0) {
+                return false; // no valid layout exists for this board
+            }
+            for (int i = 0; i < this.mineCount; i++) {
+                setMineAt(table.getCell(solution, i), true);
+            }
+            return true;
+        }
+        
+        // Boards too large to tabulate use a randomised bitmask search (diagonal masks need size <= 32)
+        if (this.size > 32) {
+            return false;
+        }
+        int firstRow = firstCell / this.size;
+        int firstCol = firstCell % this.size;
+        this.searchBudget = NQUEENS_SEARCH_BUDGET;
+        if (!searchNQueens(0, firstRow, this.mineCount - 1, 1L << firstCol,
+                1L << (firstRow + firstCol), 1L << (firstRow - firstCol + this.size - 1), random)) {
+            clearMines();
+            return false;
+        }
+        setMineAt(firstCell, true);
+        return true;
+    }
+    
+    // Bitmask backtracking with a random starting column per row; mines are set while unwinding
+    private boolean searchNQueens(int row, int firstRow, int remaining, long cols, long diags, long antiDiags,
+                                  RandomGenerator random) {
+        if (remaining == 0) {
+            return true;
+        }
+        int rowsLeft = this.size - row - (row <= firstRow ? 1 : 0);
+        if (rowsLeft < remaining || --this.searchBudget < 0) {
+            return false;
+        }
+        if (row == firstRow) {
+            return searchNQueens(row + 1, firstRow, remaining, cols, diags, antiDiags, random);
+        }
+        
+        int offset = random.nextInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            int col = offset + i < this.size ? offset + i : offset + i - this.size;
+            long c = 1L << col;
+            long d = 1L << (row + col);
+            long a = 1L << (row - col + this.size - 1);
+            if ((cols & c) == 0 && (diags & d) == 0 && (antiDiags & a) == 0
+                    && searchNQueens(row + 1, firstRow, remaining - 1, cols | c, diags | d, antiDiags | a, random)) {
+                setMineAt(row * this.size + col, true);
+                return true;
+            }
+        }
+        
+        // Try next row without placing in current row
+        return searchNQueens(row + 1, firstRow, remaining, cols, diags, antiDiags, random);
+    }
+    
+    // METHOD 2: Minimum Distance Algorithm
+    private int getMinDistance() {
+        return Math.max(1, size / 3); // Minimum distance between mines
+    }
+
+    // Each mine stamps out its Manhattan diamond in a forbidden-cell mask, and the next mine is
+    // drawn uniformly from the cells still allowed - one draw per mine, no retries
+    private boolean placeMinesMinDistance(RandomGenerator random) {
+        clearMines();
+        Arrays.fill(this.forbiddenWords, 0L);
+        int radius = getMinDistance() - 1; // cells closer than minDist are forbidden
+        
+        for (int placed = 0; placed < mineCount; placed++) {
+            int candidates = countAllowedCells();
+            if (candidates == 0) {
+                clearMines();
+                return false; // infeasible from here, detected without retrying
+            }
+            
+            int cell = selectAllowedCell(random.nextInt(candidates));
+            setMineAt(cell, true);
+            stampDiamond(cell / size, cell % size, radius);
+        }
+        return true;
+    }
+    
+    private int countAllowedCells() {
+        int count = 0;
+        for (int w = 0; w < this.forbiddenWords.length; w++) {
+            count += Long.bitCount(allowedWord(w));
+        }
+        return count;
+    }
+    
+    private int selectAllowedCell(int k) {
+        for (int w = 0; w < this.forbiddenWords.length; w++) {
+            long allowed = allowedWord(w);
+            int count = Long.bitCount(allowed);
+            if (k < count) {
+                return (w << 6) + selectBit(allowed, k);
+            }
+            k -= count;
+        }
+        return -1;
+    }
+    
+    private long allowedWord(int w) {
+        long allowed = ~this.forbiddenWords[w];
+        int valid = this.cellCount - (w << 6);
+        return valid < 64 ? allowed & ((1L << valid) - 1) : allowed;
+    }
+    
+    // Forbid every cell within Manhattan distance 'radius' of (row, col), including the cell itself
+    private void stampDiamond(int row, int col, int radius) {
+        int fromRow = Math.max(0, row - radius);
+        int toRow = Math.min(size - 1, row + radius);
+        for (int r = fromRow; r <= toRow; r++) {
+            int width = radius - Math.abs(r - row);
+            int fromCell = r * size + Math.max(0, col - width);
+            int toCell = r * size + Math.min(size - 1, col + width);
+            forbidRange(fromCell, toCell);
+        }
+    }
+    
+    private void forbidRange(int fromCell, int toCell) {
+        int fromWord = fromCell >>> 6;
+        int toWord = toCell >>> 6;
+        long fromMask = -1L << fromCell;
+        long toMask = -1L >>> (63 - (toCell & 63));
+        if (fromWord == toWord) {
+            this.forbiddenWords[fromWord] |= fromMask & toMask;
+            return;
+        }
+        this.forbiddenWords[fromWord] |= fromMask;
+        for (int w = fromWord + 1; w < toWord; w++) {
+            this.forbiddenWords[w] = -1L;
+        }
+        this.forbiddenWords[toWord] |= toMask;
+    }
+    
+    // METHOD 3: Random Placement - Floyd's sampling without replacement
+    // Exactly one draw per mine, so the work is bounded by mineCount even on dense boards
+    private void placeMinesRandom(RandomGenerator random) {
+        clearMines();
+        int mines = Math.min(mineCount, cellCount);
+        
+        for (int last = cellCount - mines; last < cellCount; last++) {
+            int cell = random.nextInt(last + 1);
+            if (isMineAt(cell)) {
+                cell = last; // 'last' can never have been drawn before this step
+            }
+            setMineAt(cell, true);
+        }
+    }
+
+    // Display the board as a plain frame
+    public void displayBoard(SessionIO out) {
+        new BoardRenderer(false).render(this, out);
+    }
+
+    @Override
+    public int getCellState(int cell) {
+        if (!isRevealedAt(cell)) {
+            return CELL_HIDDEN;
+        }
+        return isMineAt(cell) ? CELL_MINE : CELL_SAFE;
+    }
+
+    // Reveal a tile
+    @Override
+    public boolean revealTile(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            return false;
+        }
+        return revealCell(row * size + col);
+    }
+
+    public boolean revealCell(int cell) {
+        setRevealedAt(cell);
+        this.lastRevealedCell = cell;
+        return !isMineAt(cell);
+    }
+
+    // Straight on the bit masks, without the row/column round trip
+    @Override
+    public int revealCells(int[] cells, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!revealCell(cells[i])) {
+                return i + 1;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTileRevealed(int row, int col) {
+        return isRevealedAt(row * size + col);
+    }
+
+    @Override
+    public int getLastRevealedCell() {
+        return this.lastRevealedCell;
+    }
+
+    // Safe tiles still hidden - a popcount over the packed masks
+    @Override
+    public int countRemainingSafeTiles() {
+        int mines;
+        int revealedSafe;
+        if (this.mineWords == null) {
+            mines = Long.bitCount(this.mineBits);
+            revealedSafe = Long.bitCount(this.revealedBits & ~this.mineBits);
+        } else {
+            mines = 0;
+            revealedSafe = 0;
+            for (int w = 0; w < this.mineWords.length; w++) {
+                mines += Long.bitCount(this.mineWords[w]);
+                revealedSafe += Long.bitCount(this.revealedWords[w] & ~this.mineWords[w]);
+            }
+        }
+        return this.cellCount - mines - revealedSafe;
+    }
+
+    public int countMines() {
+        if (this.mineWords == null) {
+            return Long.bitCount(this.mineBits);
+        }
+        int mines = 0;
+        for (long word : this.mineWords) {
+            mines += Long.bitCount(word);
+        }
+        return mines;
+    }
+
+    public int countHiddenTiles() {
+        if (this.revealedWords == null) {
+            return this.cellCount - Long.bitCount(this.revealedBits);
+        }
+        int revealed = 0;
+        for (long word : this.revealedWords) {
+            revealed += Long.bitCount(word);
+        }
+        return this.cellCount - revealed;
+    }
+
+    // Cell index of the k-th hidden tile in row-major order (0 <= k < countHiddenTiles())
+    public int selectHiddenCell(int k) {
+        int words = this.revealedWords == null ? 1 : this.revealedWords.length;
+        for (int w = 0; w < words; w++) {
+            long hidden = ~(this.revealedWords == null ? this.revealedBits : this.revealedWords[w]);
+            int valid = this.cellCount - (w << 6);
+            if (valid < 64) {
+                hidden &= (1L << valid) - 1;
+            }
+            int count = Long.bitCount(hidden);
+            if (k < count) {
+                return (w << 6) + selectBit(hidden, k);
+            }
+            k -= count;
+        }
+        return -1;
+    }
+
+    // Position of the k-th set bit of a word
+    private static int selectBit(long word, int k) {
+        for (int i = 0; i < k; i++) {
+            word &= word - 1;
+        }
+        return Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    public int getMineCount() {
+        return this.mineCount;
+    }
+
+    @Override
+    public int getCellCount() {
+        return this.cellCount;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+}
+
+// CELL SET - Open-addressing hash set of cell indices with linear probing; no boxing, grows by doubling
+final class CellSet {
+    private int[] slots; // cell + 1, so 0 marks an empty slot
+    private int mask;
+    private int count;
+
+    public CellSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // False if the cell was already in the set
+    public boolean add(int cell) {
+        if ((this.count + 1) * 2 > this.slots.length) {
+            grow();
+        }
+        int slot = slotOf(cell);
+        if (this.slots[slot] != 0) {
+            return false;
+        }
+        this.slots[slot] = cell + 1;
+        this.count++;
+        return true;
+    }
+
+    public boolean contains(int cell) {
+        return this.slots[slotOf(cell)] != 0;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    // Members in ascending order
+    public int[] toSortedArray() {
+        int[] cells = new int[this.count];
+        int next = 0;
+        for (int slot : this.slots) {
+            if (slot != 0) {
+                cells[next++] = slot - 1;
+            }
+        }
+        Arrays.sort(cells);
+        return cells;
+    }
+
+    // The slot holding the cell, or the empty slot where it would go
+    private int slotOf(int cell) {
+        int hash = cell * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & this.mask;
+        while (this.slots[slot] != 0 && this.slots[slot] != cell + 1) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] old = this.slots;
+        this.slots = new int[old.length * 2];
+        this.mask = this.slots.length - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                this.slots[slotOf(entry - 1)] = entry;
+            }
+        }
+    }
+}
+
+// SPARSE BOARD - Large boards whose memory follows the mines and reveals, not the area
+// Mines and revealed cells are CellSets of cell indices (row * size + col); mines are placed with Floyd's
+// sampling from the round seed, one draw per mine, so a 1000x1000 board with thousands of mines is cheap
+class SparseBoard implements GameBoard {
+    public static final int MAX_SIZE = 46_340; // size * size must fit in an int
+    public static final int MAX_MINES = 1 << 20;
+
+    private final int size;
+    private final int mineCount;
+    private final int cellCount;
+    private final CellSet mines;
+    private final CellSet revealed = new CellSet(16);
+    private int revealedSafe;
+    private int lastRevealedCell = -1;
+    private long roundSeed;
+
+    public SparseBoard(int size, int mineCount) {
+        if (size < 2 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 2 and " + MAX_SIZE);
+        }
+        if (mineCount < 1 || mineCount >= size * size || mineCount > MAX_MINES) {
+            throw new IllegalArgumentException("Mine count must be between 1 and "
+                    + Math.min(size * size - 1, MAX_MINES));
+        }
+        this.size = size;
+        this.mineCount = mineCount;
+        this.cellCount = size * size;
+        this.mines = new CellSet(mineCount);
+    }
+
+    // Rebuilds the layout of a logged large-board round
+    public static SparseBoard replay(int size, int mines, long seed) {
+        SparseBoard board = new SparseBoard(size, mines);
+        board.placeMines(seed);
+        return board;
+    }
+
+    public void placeMines(long seed) {
+        this.roundSeed = seed;
+        SplitMix64 random = new SplitMix64(seed);
+        for (int last = this.cellCount - this.mineCount; last < this.cellCount; last++) {
+            if (!this.mines.add(random.nextInt(last + 1))) {
+                this.mines.add(last); // 'last' can never have been drawn before this step
+            }
+        }
+    }
+
+    @Override
+    public boolean revealTile(int row, int col) {
+        if (row < 0 || row >= this.size || col < 0 || col >= this.size) {
+            return false;
+        }
+        int cell = row * this.size + col;
+        boolean safe = !this.mines.contains(cell);
+        if (this.revealed.add(cell) && safe) {
+            this.revealedSafe++;
+        }
+        this.lastRevealedCell = cell;
+        return safe;
+    }
+
+    @Override
+    public boolean isTileRevealed(int row, int col) {
+        return this.revealed.contains(row * this.size + col);
+    }
+
+    @Override
+    public int getCellState(int cell) {
+        if (!this.revealed.contains(cell)) {
+            return Board.CELL_HIDDEN;
+        }
+        return this.mines.contains(cell) ? Board.CELL_MINE : Board.CELL_SAFE;
+    }
+
+    @Override
+    public int getLastRevealedCell() {
+        return this.lastRevealedCell;
+    }
+
+    @Override
+    public int countRemainingSafeTiles() {
+        return this.cellCount - this.mineCount - this.revealedSafe;
+    }
+
+    @Override
+    public void describePlacement(SessionIO out) {
+        out.println("\n" + this.mineCount + " mines placed at random on a " + this.size + "x" + this.size + " board.");
+    }
+
+    // Mine cells in ascending order
+    public int[] getMineCells() {
+        return this.mines.toSortedArray();
+    }
+
+    @Override
+    public long getRoundSeed() {
+        return this.roundSeed;
+    }
+
+    @Override
+    public int getMineCount() {
+        return this.mineCount;
+    }
+
+    @Override
+    public int getCellCount() {
+        return this.cellCount;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+}
+
+// REVEAL RESULT - Outcome of revealing a list of tiles in one call
+// The tiles are checked against the mines in one pass that stops at the first mine; with a target the pass also
+// stops at the pick that brings the multiplier up to it, and the round is cashed out there
+final class RevealResult {
+    private final int requested;
+    private final int revealed;
+    private final int safeTiles;
+    private final int mineCell;
+    private final long multiplier;
+    private final boolean cashOut;
+
+    private RevealResult(int requested, int revealed, int safeTiles, int mineCell, long multiplier, boolean cashOut) {
+        this.requested = requested;
+        this.revealed = revealed;
+        this.safeTiles = safeTiles;
+        this.mineCell = mineCell;
+        this.multiplier = multiplier;
+        this.cashOut = cashOut;
+    }
+
+    // cells are distinct hidden cells; payout is the round's progress, moved on by the safe tiles found (after a
+    // mine hit it is left where the target search got to, as the round is over); target is in PayoutTable basis
+    // points, 0 for none
+    public static RevealResult reveal(GameBoard board, int[] cells, int count, PayoutProgress payout, long target) {
+        int safeCells = board.getCellCount() - board.getMineCount();
+
+        // Picks after the one that reaches the target are never made; the search steps the progress once per pick
+        int limit = count;
+        int advanced = 0;
+        if (target > 0) {
+            while (advanced < count && payout.getSafeTiles() < safeCells) {
+                advanced++;
+                if (payout.advance() >= target) {
+                    limit = advanced;
+                    break;
+                }
+            }
+        }
+
+        int revealed = board.revealCells(cells, limit);
+        boolean hitMine = revealed > 0 && board.getCellState(cells[revealed - 1]) == Board.CELL_MINE;
+        int safeTiles = hitMine ? revealed - 1 : revealed;
+        for (int i = advanced; i < safeTiles; i++) {
+            payout.advance();
+        }
+        long multiplier = payout.getMultiplier();
+        return new RevealResult(count, revealed, safeTiles, hitMine ? cells[revealed - 1] : -1, multiplier,
+                !hitMine && target > 0 && multiplier >= target);
+    }
+
+    public int getRequested() {
+        return this.requested;
+    }
+
+    // Tiles actually turned over, the mine included
+    public int getRevealed() {
+        return this.revealed;
+    }
+
+    public int getSafeTiles() {
+        return this.safeTiles;
+    }
+
+    public boolean isMineHit() {
+        return this.mineCell >= 0;
+    }
+
+    // -1 when no mine was hit
+    public int getMineCell() {
+        return this.mineCell;
+    }
+
+    // Multiplier for the whole round after this batch
+    public long getMultiplier() {
+        return this.multiplier;
+    }
+
+    // The target was reached, so the round cashes out without asking
+    public boolean isCashOut() {
+        return this.cashOut;
+    }
+}
+
+// BOARD RENDERER - Composes a board frame in a reused buffer and sends it with a single write
+// ANSI mode draws the whole board once per round and afterwards repaints only the cells that changed.
+// Boards wider than the viewport show a window around the last revealed tile, so a frame never walks the whole board.
+class BoardRenderer {
+    private static final String[] CELL_TEXT = {"[ ? ]", "[ D ]", "[ X ]"};
+    private static final String ESC = "\u001b[";
+    private static final int CELL_WIDTH = 5;
+
+    private final boolean ansi;
+    private final int viewport;
+    private final StringBuilder frame = new StringBuilder(1024);
+    private byte[] shownStates = new byte[0];
+    private boolean fullFrameDue = true;
+
+    // Window of the frame being drawn: top-left cell, rows and columns shown, and where the first row is
+    private int originRow;
+    private int originCol;
+    private int span;
+    private int labelWidth;
+    private int firstRowLine;
+
+    public BoardRenderer(boolean ansi) {
+        this(ansi, 10);
+    }
+
+    public BoardRenderer(boolean ansi, int viewport) {
+        this.ansi = ansi;
+        this.viewport = viewport;
+    }
+
+    // -Dminestake.render=plain|ansi, -Dminestake.render.viewport=<rows and columns shown of a large board>
+    public static BoardRenderer fromSystemProperties() {
+        return new BoardRenderer(System.getProperty("minestake.render", "plain").equals("ansi"),
+                Math.max(2, Integer.getInteger("minestake.render.viewport", 10)));
+    }
+
+    public boolean isAnsi() {
+        return this.ansi;
+    }
+
+    // The next frame is drawn in full (a new round, or the screen has been written over)
+    public void reset() {
+        this.fullFrameDue = true;
+    }
+
+    public void render(GameBoard board, SessionIO out) {
+        boolean moved = placeWindow(board);
+        this.frame.setLength(0);
+        if (!this.ansi) {
+            appendFullFrame(board);
+        } else if (this.fullFrameDue || moved) {
+            this.frame.append(ESC).append("2J").append(ESC).append('H');
+            appendFullFrame(board);
+            rememberStates(board);
+            this.fullFrameDue = false;
+        } else if (!appendChangedCells(board)) {
+            return;
+        }
+        out.print(this.frame.toString());
+    }
+
+    // Centres the window on the last revealed tile; true if it differs from the previous frame's window
+    private boolean placeWindow(GameBoard board) {
+        int size = board.getSize();
+        int span = Math.min(size, this.viewport);
+        int originRow = 0;
+        int originCol = 0;
+        int focus = board.getLastRevealedCell();
+        if (span < size && focus >= 0) {
+            originRow = Math.max(0, Math.min(size - span, focus / size - span / 2));
+            originCol = Math.max(0, Math.min(size - span, focus % size - span / 2));
+        }
+        // Recentre only when the focus leaves the window, so ANSI mode can keep repainting single cells
+        if (span == this.span && span < size && focus >= 0 && this.labelWidth == labelWidthFor(size)
+                && inWindow(focus / size, focus % size)) {
+            return false;
+        }
+        boolean moved = span != this.span || originRow != this.originRow || originCol != this.originCol
+                || this.labelWidth != labelWidthFor(size);
+        this.span = span;
+        this.originRow = originRow;
+        this.originCol = originCol;
+        this.labelWidth = labelWidthFor(size);
+        this.firstRowLine = span < size ? 4 : 3; // blank line, window line if any, then column headers
+        return moved;
+    }
+
+    private boolean inWindow(int row, int col) {
+        return row >= this.originRow && row < this.originRow + this.span
+                && col >= this.originCol && col < this.originCol + this.span;
+    }
+
+    private static int labelWidthFor(int size) {
+        return Math.max(2, Integer.toString(size).length());
+    }
+
+    private void appendFullFrame(GameBoard board) {
+        int size = board.getSize();
+        this.frame.append('\n');
+        if (this.span < size) {
+            this.frame.append("Rows ").append(this.originRow + 1).append('-').append(this.originRow + this.span)
+                    .append(", columns ").append(this.originCol + 1).append('-').append(this.originCol + this.span)
+                    .append(" of ").append(size).append('x').append(size).append('\n');
+        }
+        appendSpaces(this.labelWidth + 1);
+        for (int col = this.originCol + 1; col <= this.originCol + this.span; col++) {
+            if (this.labelWidth == 2) {
+                appendPadded(col, 4);
+                this.frame.append("  ");
+            } else {
+                appendPadded(col, CELL_WIDTH - 1);
+                this.frame.append(' ');
+            }
+        }
+        this.frame.append('\n');
+
+        for (int row = this.originRow; row < this.originRow + this.span; row++) {
+            appendPadded(row + 1, this.labelWidth);
+            this.frame.append(' ');
+            for (int col = this.originCol; col < this.originCol + this.span; col++) {
+                this.frame.append(CELL_TEXT[board.getCellState(row * size + col)]);
+            }
+            this.frame.append('\n');
+        }
+        this.frame.append('\n');
+    }
+
+    // Moves the cursor to each changed cell, then below the board, clearing the old messages there
+    private boolean appendChangedCells(GameBoard board) {
+        int size = board.getSize();
+        boolean changed = false;
+        for (int i = 0; i < this.shownStates.length; i++) {
+            int row = this.originRow + i / this.span;
+            int col = this.originCol + i % this.span;
+            int state = board.getCellState(row * size + col);
+            if (state != this.shownStates[i]) {
+                this.shownStates[i] = (byte) state;
+                moveCursor(this.firstRowLine + i / this.span, this.labelWidth + 2 + (i % this.span) * CELL_WIDTH);
+                this.frame.append(CELL_TEXT[state]);
+                changed = true;
+            }
+        }
+        if (changed) {
+            moveCursor(this.firstRowLine + this.span + 1, 1);
+            this.frame.append(ESC).append('J');
+        }
+        return changed;
+    }
+
+    // Only the window's cells are remembered, so this stays small however large the board is
+    private void rememberStates(GameBoard board) {
+        int size = board.getSize();
+        if (this.shownStates.length != this.span * this.span) {
+            this.shownStates = new byte[this.span * this.span];
+        }
+        for (int i = 0; i < this.shownStates.length; i++) {
+            int row = this.originRow + i / this.span;
+            int col = this.originCol + i % this.span;
+            this.shownStates[i] = (byte) board.getCellState(row * size + col);
+        }
+    }
+
+    private void moveCursor(int line, int column) {
+        this.frame.append(ESC).append(line).append(';').append(column).append('H');
+    }
+
+    private void appendSpaces(int count) {
+        for (int i = 0; i < count; i++) {
+            this.frame.append(' ');
+        }
+    }
+
+    // Right-aligned like %<width>d, without going through String.format
+    private void appendPadded(int value, int width) {
+        int digits = value < 10 ? 1 : value < 100 ? 2 : value < 1000 ? 3 : (int) Math.log10(value) + 1;
+        for (int i = digits; i < width; i++) {
+            this.frame.append(' ');
+        }
+        this.frame.append(value);
+    }
+}
+
+// PAYOUT TABLE - Multiplier earned after a number of safe tiles (shared by the game and the simulator)
+// Multipliers are fixed-point basis points (1.25x = 12500). The fair multiplier after k safe tiles on a
+// board of n cells with m mines is C(n, k) / C(n - m, k); it is computed exactly with BigInteger, the
+// house edge is taken off and the result rounded down. Every row is built once when the class loads.
+class PayoutTable {
+    public static final long ONE = 10_000L;
+    public static final long MAX_MULTIPLIER = 1_000_000L * ONE;
+    public static final int MIN_SIZE = 2;
+    public static final int MAX_SIZE = 10;
+    static final long LINEAR_STEP = 2_500L;
+    private static final PayoutTable SHARED = fromSystemProperties();
+
+    private final boolean linear;
+    private final long houseEdgeBasisPoints;
+    // rows[size][mines][safe tiles revealed]
+    private final long[][][] rows = new long[MAX_SIZE + 1][][];
+
+    public PayoutTable(boolean linear, long houseEdgeBasisPoints) {
+        if (houseEdgeBasisPoints < 0 || houseEdgeBasisPoints >= ONE) {
+            throw new IllegalArgumentException("House edge must be at least 0% and below 100%");
+        }
+        this.linear = linear;
+        this.houseEdgeBasisPoints = houseEdgeBasisPoints;
+        for (int size = MIN_SIZE; size <= MAX_SIZE; size++) {
+            int cells = size * size;
+            this.rows[size] = new long[cells][];
+            for (int mines = 1; mines < cells; mines++) {
+                this.rows[size][mines] = buildRow(cells, mines);
+            }
+        }
+    }
+
+    // -Dminestake.payout=odds|linear, -Dminestake.payout.houseEdge=<percent> (odds only)
+    private static PayoutTable fromSystemProperties() {
+        boolean linear = System.getProperty("minestake.payout", "odds").equals("linear");
+        long edge = new BigDecimal(System.getProperty("minestake.payout.houseEdge", "1"))
+                .movePointRight(2).longValueExact();
+        return new PayoutTable(linear, edge);
+    }
+
+    public static PayoutTable shared() {
+        return SHARED;
+    }
+
+    public boolean isLinear() {
+        return this.linear;
+    }
+
+    public long getHouseEdgeBasisPoints() {
+        return this.houseEdgeBasisPoints;
+    }
+
+    // Multipliers for 0..(cells - mines) safe tiles; looked up once per round, then indexed per move
+    public long[] row(int size, int mines) {
+        if (size >= MIN_SIZE && size <= MAX_SIZE && mines >= 1 && mines < size * size) {
+            return this.rows[size][mines];
+        }
+        return buildRow(size * size, mines);
+    }
+
+    // Multiplier after a number of safe tiles; tabulated boards are a lookup, larger ones step a fresh progress
+    // and stop at the cap. A round should keep its own progress() instead of calling this per move
+    public long multiplier(int size, int mines, int safeTiles) {
+        if (size >= MIN_SIZE && size <= MAX_SIZE && mines >= 1 && mines < size * size) {
+            return this.rows[size][mines][safeTiles];
+        }
+        if (safeTiles == 0) {
+            return this.linear ? ONE : ONE - this.houseEdgeBasisPoints;
+        }
+        PayoutProgress progress = progress(size, mines);
+        long multiplier = ONE;
+        for (int k = 0; k < safeTiles && multiplier < MAX_MULTIPLIER; k++) {
+            multiplier = progress.advance();
+        }
+        return multiplier;
+    }
+
+    // A round's running multiplier, starting before the first safe tile
+    public PayoutProgress progress(int size, int mines) {
+        long[] row = size >= MIN_SIZE && size <= MAX_SIZE && mines >= 1 && mines < size * size
+                ? this.rows[size][mines] : null;
+        return new PayoutProgress(row, this.linear, (long) size * size, mines, ONE - this.houseEdgeBasisPoints);
+    }
+
+    private long[] buildRow(int cells, int mines) {
+        long[] row = new long[cells - mines + 1];
+        if (this.linear) {
+            for (int k = 0; k < row.length; k++) {
+                row[k] = Math.min(MAX_MULTIPLIER, ONE + LINEAR_STEP * k);
+            }
+            return row;
+        }
+
+        // C(n, k) / C(n - m, k) = prod (n - i) / (n - m - i) for i < k
+        BigInteger numerator = BigInteger.valueOf(ONE - this.houseEdgeBasisPoints);
+        BigInteger denominator = BigInteger.ONE;
+        BigInteger cap = BigInteger.valueOf(MAX_MULTIPLIER);
+        row[0] = ONE - this.houseEdgeBasisPoints;
+        for (int k = 1; k < row.length; k++) {
+            numerator = numerator.multiply(BigInteger.valueOf(cells - k + 1));
+            denominator = denominator.multiply(BigInteger.valueOf(cells - mines - k + 1));
+            BigInteger multiplier = numerator.divide(denominator);
+            row[k] = multiplier.compareTo(cap) >= 0 ? MAX_MULTIPLIER : multiplier.longValueExact();
+        }
+        return row;
+    }
+
+    // Winnings in paise, rounded down; splitting the bet keeps bet x multiplier from overflowing
+    public static long payout(long betPaise, long multiplier) {
+        return betPaise / ONE * multiplier + betPaise % ONE * multiplier / ONE;
+    }
+
+    public static double toDouble(long multiplier) {
+        return multiplier / (double) ONE;
+    }
+
+    // "1.25" for 12500, rounded to two decimals
+    public static String formatMultiplier(long multiplier) {
+        return formatHundredths((multiplier + 50) / 100);
+    }
+
+    // "12.50" for 1250 - used for rupee amounts held in paise
+    public static String formatHundredths(long hundredths) {
+        StringBuilder text = new StringBuilder(24);
+        if (hundredths < 0) {
+            text.append('-');
+            hundredths = -hundredths;
+        }
+        long fraction = hundredths % 100;
+        text.append(hundredths / 100).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+}
+
+// PAYOUT PROGRESS - One round's multiplier, moved on a safe tile at a time
+// Tabulated boards index their row. Larger boards keep C(n, k) / C(n - m, k) as a fraction with the common
+// factors cancelled: k factors over k while k <= m, then n!/(n - m)! over the m factors (n - k - j). A step is
+// one multiply, or one exact divide and multiply, by small numbers on values of min(k, m) factors, and as the
+// product never falls, nothing is computed once it reaches the cap.
+final class PayoutProgress {
+    private static final BigInteger CAP = BigInteger.valueOf(PayoutTable.MAX_MULTIPLIER);
+
+    private final long[] row; // null when the board is too large to tabulate
+    private final boolean linear;
+    private final long cells;
+    private final long mines;
+    private BigInteger numerator; // carries the house edge
+    private BigInteger denominator = BigInteger.ONE;
+    private int safeTiles;
+    private long multiplier = PayoutTable.ONE;
+
+    PayoutProgress(long[] row, boolean linear, long cells, long mines, long edgeFactor) {
+        this.row = row;
+        this.linear = linear;
+        this.cells = cells;
+        this.mines = mines;
+        this.numerator = BigInteger.valueOf(edgeFactor);
+    }
+
+    public int getSafeTiles() {
+        return this.safeTiles;
+    }
+
+    // ONE until the first safe tile, as the game shows it
+    public long getMultiplier() {
+        return this.multiplier;
+    }
+
+    // The multiplier after one more safe tile
+    public long advance() {
+        int k = ++this.safeTiles;
+        if (this.row != null) {
+            this.multiplier = this.row[k];
+        } else if (this.linear) {
+            this.multiplier = Math.min(PayoutTable.MAX_MULTIPLIER, PayoutTable.ONE + PayoutTable.LINEAR_STEP * k);
+        } else if (this.multiplier < PayoutTable.MAX_MULTIPLIER) {
+            if (k <= this.mines) {
+                this.numerator = this.numerator.multiply(BigInteger.valueOf(this.cells - k + 1));
+                this.denominator = this.denominator.multiply(BigInteger.valueOf(this.cells - this.mines - k + 1));
+            } else {
+                // (n - k + 1) leaves the denominator's m factors and (n - k - m + 1) joins them
+                this.denominator = this.denominator.divide(BigInteger.valueOf(this.cells - k + 1))
+                        .multiply(BigInteger.valueOf(this.cells - this.mines - k + 1));
+            }
+            BigInteger value = this.numerator.divide(this.denominator);
+            this.multiplier = value.compareTo(CAP) >= 0 ? PayoutTable.MAX_MULTIPLIER : value.longValueExact();
+        }
+        return this.multiplier;
+    }
+}
+
+// BOARD SOURCE - Where a game gets the board for each round and returns it afterwards
+interface BoardSource {
+    Board take(int mines);
+
+    void recycle(Board board);
+
+    // Large-board rounds: nothing to pre-generate, the sparse layout is placed on the game thread
+    default GameBoard takeLarge(int size, int mines) {
+        return SparseBoard.replay(size, mines, RngService.shared().nextRoundSeed());
+    }
+}
+
+// BOARD POOL - Boards with mines already placed, produced in the background for each mine count
+// take() is a queue poll; finished boards come back through recycle() and are refilled off the game thread
+class BoardPool implements BoardSource {
+    public static final int MIN_MINES = 2;
+    public static final int MAX_MINES = 10;
+    private static final BoardPool SHARED = new BoardPool(
+            Integer.getInteger("minestake.pool.depth", 4),
+            Integer.getInteger("minestake.pool.threads", 1));
+
+    private final List<ArrayBlockingQueue<Board>> ready = new ArrayList<>();
+    private final List<ArrayBlockingQueue<Board>> spare = new ArrayList<>();
+    private final AtomicBoolean[] refilling;
+    private final ExecutorService producers;
+    private final AtomicLong misses = new AtomicLong();
+
+    public BoardPool(int depth, int threads) {
+        int configs = MAX_MINES - MIN_MINES + 1;
+        this.refilling = new AtomicBoolean[configs];
+        for (int i = 0; i < configs; i++) {
+            this.ready.add(new ArrayBlockingQueue<>(depth));
+            this.spare.add(new ArrayBlockingQueue<>(depth));
+            this.refilling[i] = new AtomicBoolean();
+        }
+        this.producers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "board-producer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        for (int mines = MIN_MINES; mines <= MAX_MINES; mines++) {
+            scheduleRefill(mines);
+        }
+    }
+
+    public static BoardPool shared() {
+        return SHARED;
+    }
+
+    // Board size equals the mine count, as in the game
+    @Override
+    public Board take(int mines) {
+        if (mines < MIN_MINES || mines > MAX_MINES) {
+            return produce(new Board(mines, mines));
+        }
+        Board board = this.ready.get(mines - MIN_MINES).poll();
+        scheduleRefill(mines);
+        if (board == null) {
+            // The producers have fallen behind - place this one on the caller's thread
+            this.misses.incrementAndGet();
+            board = produce(newOrSpare(mines));
+        }
+        return board;
+    }
+
+    // Hand a finished board back for reuse; it is cleared before the next layout
+    @Override
+    public void recycle(Board board) {
+        int mines = board.getSize();
+        if (mines >= MIN_MINES && mines <= MAX_MINES) {
+            board.reset();
+            this.spare.get(mines - MIN_MINES).offer(board);
+        }
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private void scheduleRefill(int mines) {
+        if (this.refilling[mines - MIN_MINES].compareAndSet(false, true)) {
+            this.producers.execute(() -> refill(mines));
+        }
+    }
+
+    private void refill(int mines) {
+        ArrayBlockingQueue<Board> queue = this.ready.get(mines - MIN_MINES);
+        try {
+            while (queue.remainingCapacity() > 0) {
+                if (!queue.offer(produce(newOrSpare(mines)))) {
+                    break;
+                }
+            }
+        } finally {
+            this.refilling[mines - MIN_MINES].set(false);
+        }
+        // A take() that raced with the end of this refill may have left the queue short
+        if (queue.remainingCapacity() > 0) {
+            scheduleRefill(mines);
+        }
+    }
+
+    private Board newOrSpare(int mines) {
+        Board board = this.spare.get(mines - MIN_MINES).poll();
+        return board != null ? board : new Board(mines, mines);
+    }
+
+    private static Board produce(Board board) {
+        board.placeMinesWithRandomAlgorithm(RngService.shared().nextRoundSeed());
+        return board;
+    }
+}
+
+// THREAD 1 - Loading Animation (extends Thread)
+class LoadingThread extends Thread {
+    private String message;
+    private SessionIO out;
+
+    public LoadingThread(String message, SessionIO out) {
+        this.message = message;
+        this.out = out;
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.out.print(this.message);
+            for (int i = 0; i < 3; i++) {
+                Thread.sleep(500);
+                this.out.print(".");
+            }
+            this.out.println(" Done!");
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            this.out.println("Loading interrupted!");
+        }
+    }
+}
+
+// RING BUFFER - Bounded lock-free queue for many producer threads and a single consumer thread
+class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next slot a producer will claim
+    private volatile long head;                       // next slot the consumer will read
+
+    public MpscRingBuffer(int requestedCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.capacity = size;
+        this.mask = size - 1;
+    }
+
+    // Returns false when the buffer is full
+    public boolean offer(E element) {
+        while (true) {
+            long claim = this.tail.get();
+            if (claim - this.head >= this.capacity) {
+                return false;
+            }
+            if (this.tail.compareAndSet(claim, claim + 1)) {
+                this.slots.lazySet((int) claim & this.mask, element);
+                return true;
+            }
+        }
+    }
+
+    // Consumer thread only - null when empty or the next producer has not published yet
+    public E poll() {
+        long current = this.head;
+        int index = (int) current & this.mask;
+        E element = this.slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        this.slots.lazySet(index, null);
+        this.head = current + 1;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return this.tail.get() == this.head;
+    }
+
+    // Total number of elements ever claimed by producers
+    public long producedCount() {
+        return this.tail.get();
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+}
+
+// LOG ENTRY - One finished round with amounts in paise, formatted by the writer thread rather than the game thread
+final class LogEntry {
+    private final long timestamp;
+    private final boolean won;
+    private final long betPaise;
+    private final long winningsPaise;
+    private final long balancePaise;
+    private final boolean seeded;
+    private final long roundSeed;
+
+    // Entries from the binary log and from lines written before round seeds were logged carry no seed
+    public LogEntry(long timestamp, boolean won, long betPaise, long winningsPaise, long balancePaise) {
+        this(timestamp, won, betPaise, winningsPaise, balancePaise, false, 0L);
+    }
+
+    public LogEntry(long timestamp, boolean won, long betPaise, long winningsPaise, long balancePaise,
+                    long roundSeed) {
+        this(timestamp, won, betPaise, winningsPaise, balancePaise, true, roundSeed);
+    }
+
+    private LogEntry(long timestamp, boolean won, long betPaise, long winningsPaise, long balancePaise,
+                     boolean seeded, long roundSeed) {
+        this.timestamp = timestamp;
+        this.won = won;
+        this.betPaise = betPaise;
+        this.winningsPaise = winningsPaise;
+        this.balancePaise = balancePaise;
+        this.seeded = seeded;
+        this.roundSeed = roundSeed;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public boolean isWon() {
+        return this.won;
+    }
+
+    public long getBetPaise() {
+        return this.betPaise;
+    }
+
+    public long getWinningsPaise() {
+        return this.winningsPaise;
+    }
+
+    public long getBalancePaise() {
+        return this.balancePaise;
+    }
+
+    public boolean hasRoundSeed() {
+        return this.seeded;
+    }
+
+    public long getRoundSeed() {
+        return this.roundSeed;
+    }
+}
+
+// TEXT LOG CODEC - The human-readable game_log.txt line format
+// <Date> | WIN | Bet: Rs.x | Winnings: Rs.y | Balance: Rs.z [| Seed: <16 hex digits>]
+class TextLogCodec {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // Date.toString() layout; ambiguous zone names such as IST resolve to the local zone, then to India
+    private static final java.time.format.DateTimeFormatter DATE_FORMAT =
+            new java.time.format.DateTimeFormatterBuilder()
+                    .appendPattern("EEE MMM dd HH:mm:ss ")
+                    .appendZoneText(java.time.format.TextStyle.SHORT,
+                            new HashSet<>(Arrays.asList(java.time.ZoneId.systemDefault(),
+                                    java.time.ZoneId.of("Asia/Kolkata"))))
+                    .appendPattern(" yyyy")
+                    .toFormatter(Locale.US);
+
+    // Date.toString() only changes once per second, so the last rendering is cached
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedTimestamp;
+
+    // Longest line encode() can produce, so callers can make room up front
+    public static final int MAX_LINE_BYTES = 256;
+
+    public void encode(LogEntry entry, ByteBuffer out) {
+        long second = Math.floorDiv(entry.getTimestamp(), 1000L);
+        if (second != this.cachedSecond) {
+            this.cachedSecond = second;
+            this.cachedTimestamp = new Date(entry.getTimestamp()).toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        out.put(this.cachedTimestamp);
+        putAscii(out, entry.isWon() ? " | WIN | Bet: Rs." : " | LOSS | Bet: Rs.");
+        putAmount(out, entry.getBetPaise());
+        putAscii(out, " | Winnings: Rs.");
+        putAmount(out, entry.getWinningsPaise());
+        putAscii(out, " | Balance: Rs.");
+        putAmount(out, entry.getBalancePaise());
+        if (entry.hasRoundSeed()) {
+            putAscii(out, " | Seed: ");
+            putHex(out, entry.getRoundSeed());
+        }
+        out.put(LINE_SEPARATOR);
+    }
+
+    // The line encode() writes, without its line separator
+    public String format(LogEntry entry) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_LINE_BYTES);
+        encode(entry, out);
+        return new String(out.array(), 0, out.position() - LINE_SEPARATOR.length, StandardCharsets.US_ASCII);
+    }
+
+    // Parses one log line back into an entry; null when the line is not a game record
+    public LogEntry parse(String line) {
+        String[] fields = line.split(" \\| ");
+        if (fields.length < 5) {
+            return null;
+        }
+        try {
+            long timestamp = java.time.ZonedDateTime.parse(fields[0], DATE_FORMAT).toInstant().toEpochMilli();
+            boolean won = fields[1].equals("WIN");
+            long bet = parseAmount(fields[2], "Bet: Rs.");
+            long winnings = parseAmount(fields[3], "Winnings: Rs.");
+            long balance = parseAmount(fields[4], "Balance: Rs.");
+            if (fields.length > 5 && fields[5].startsWith("Seed: ")) {
+                return new LogEntry(timestamp, won, bet, winnings, balance,
+                        RngService.parseSeed(fields[5].substring("Seed: ".length())));
+            }
+            return new LogEntry(timestamp, won, bet, winnings, balance);
+        } catch (java.time.format.DateTimeParseException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // "Bet: Rs.12.50" -> 1250, parsed exactly rather than through a double
+    private static long parseAmount(String field, String prefix) {
+        if (!field.startsWith(prefix)) {
+            throw new IllegalArgumentException("Expected " + prefix);
+        }
+        String amount = field.substring(prefix.length());
+        int dot = amount.indexOf('.');
+        String rupees = dot < 0 ? amount : amount.substring(0, dot);
+        String fraction = dot < 0 ? "" : (amount.substring(dot + 1) + "00").substring(0, 2);
+        boolean negative = rupees.startsWith("-");
+        long paise = Math.abs(Long.parseLong(rupees)) * 100 + (fraction.isEmpty() ? 0 : Long.parseLong(fraction));
+        return negative ? -paise : paise;
+    }
+
+    private static void putAscii(ByteBuffer out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.put((byte) text.charAt(i));
+        }
+    }
+
+    // Same output as %.2f, without String.format
+    private static void putAmount(ByteBuffer out, long paise) {
+        if (paise < 0) {
+            out.put((byte) '-');
+            paise = -paise;
+        }
+        putDigits(out, paise / 100);
+        out.put((byte) '.');
+        out.put((byte) ('0' + paise % 100 / 10));
+        out.put((byte) ('0' + paise % 10));
+    }
+
+    // All 16 hex digits, as RngService.formatSeed writes them
+    private static void putHex(ByteBuffer out, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            int nibble = (int) (value >>> shift) & 0xF;
+            out.put((byte) (nibble < 10 ? '0' + nibble : 'a' + nibble - 10));
+        }
+    }
+
+    private static void putDigits(ByteBuffer out, long value) {
+        if (value >= 10) {
+            putDigits(out, value / 10);
+        }
+        out.put((byte) ('0' + value % 10));
+    }
+}
+
+// LOG RECORD VISITOR - Receives binary log records without allocating an entry per record
+interface LogRecordVisitor {
+    void visit(long timestamp, boolean won, long betPaise, long winningsPaise, long balancePaise);
+}
+
+// BINARY GAME LOG - Fixed-width records in append-only segments with a sparse timestamp index
+// Segment file: 16-byte header, then 32-byte records (timestamp with the WIN flag in bit 63, bet, winnings, balance)
+// Index file: one (timestamp, record number) pair every INDEX_INTERVAL records of the segment
+class BinaryGameLog implements Closeable {
+    public static final int RECORD_BYTES = 32;
+    private static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int INDEX_INTERVAL = 256;
+    private static final int MAGIC = 0x4D534C47; // "MSLG"
+    private static final short VERSION = 1;
+    private static final long WIN_FLAG = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long recordsPerSegment;
+    private final ByteBuffer records = ByteBuffer.allocate(RECORD_BYTES * 1024);
+    private final ByteBuffer indexEntries = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 64);
+
+    private FileChannel segment;
+    private FileChannel index;
+    private int segmentNumber = -1;
+    private long recordsInSegment;
+
+    public BinaryGameLog(Path directory, long recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    public void append(LogEntry entry) throws IOException {
+        if (this.segment == null || this.recordsInSegment == this.recordsPerSegment) {
+            openNextSegment();
+        }
+        if (this.recordsInSegment % INDEX_INTERVAL == 0) {
+            if (!this.indexEntries.hasRemaining()) {
+                flushBuffers();
+            }
+            this.indexEntries.putLong(entry.getTimestamp());
+            this.indexEntries.putLong(this.recordsInSegment);
+        }
+        if (!this.records.hasRemaining()) {
+            flushBuffers();
+        }
+        this.records.putLong(entry.isWon() ? entry.getTimestamp() | WIN_FLAG : entry.getTimestamp());
+        this.records.putLong(entry.getBetPaise());
+        this.records.putLong(entry.getWinningsPaise());
+        this.records.putLong(entry.getBalancePaise());
+        this.recordsInSegment++;
+    }
+
+    // Writes buffered records and index entries, optionally forcing them to disk
+    public void flush(boolean force) throws IOException {
+        flushBuffers();
+        if (force && this.segment != null) {
+            this.segment.force(false);
+            this.index.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush(false);
+        closeSegment();
+    }
+
+    private void flushBuffers() throws IOException {
+        writeFully(this.segment, this.records);
+        writeFully(this.index, this.indexEntries);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Continues the newest segment on first use, otherwise starts a fresh one
+    private void openNextSegment() throws IOException {
+        if (this.segment != null) {
+            flushBuffers();
+            closeSegment();
+        } else {
+            Files.createDirectories(this.directory);
+            List<Path> existing = listSegments(this.directory);
+            this.segmentNumber = existing.isEmpty() ? -1 : segmentNumber(existing.get(existing.size() - 1));
+        }
+
+        if (this.segmentNumber >= 0 && this.recordsInSegment == 0) {
+            // Resume the last segment, dropping any torn record at its end
+            Path path = segmentPath(this.directory, this.segmentNumber);
+            this.segment = FileChannel.open(path, StandardOpenOption.WRITE);
+            long records = Math.max(0, (this.segment.size() - HEADER_BYTES) / RECORD_BYTES);
+            if (records < this.recordsPerSegment) {
+                this.segment.truncate(HEADER_BYTES + records * RECORD_BYTES);
+                this.segment.position(this.segment.size());
+                this.index = FileChannel.open(indexPath(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                this.index.truncate((records + INDEX_INTERVAL - 1) / INDEX_INTERVAL * INDEX_ENTRY_BYTES);
+                this.index.position(this.index.size());
+                this.recordsInSegment = records;
+                return;
+            }
+            this.segment.close();
+        }
+
+        this.segmentNumber++;
+        Path path = segmentPath(this.directory, this.segmentNumber);
+        this.segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(indexPath(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_BYTES).putInt(this.segmentNumber).putInt(0);
+        writeFully(this.segment, header);
+        this.recordsInSegment = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        if (this.segment != null) {
+            this.segment.close();
+            this.index.close();
+        }
+    }
+
+    // Visits every record with from <= timestamp <= to, using the index to skip to the first candidate
+    // Records are assumed to be appended in timestamp order
+    public static void query(Path directory, long from, long to, LogRecordVisitor visitor) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (Path path : listSegments(directory)) {
+            try (FileChannel segmentChannel = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel indexChannel = FileChannel.open(indexPath(path), StandardOpenOption.READ)) {
+                long indexSize = indexChannel.size() / INDEX_ENTRY_BYTES * INDEX_ENTRY_BYTES;
+                long recordCount = (segmentChannel.size() - HEADER_BYTES) / RECORD_BYTES;
+                if (indexSize == 0 || recordCount <= 0) {
+                    continue;
+                }
+                MappedByteBuffer indexMap = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+                if (indexMap.getLong(0) > to) {
+                    return; // this and every later segment start after the range
+                }
+
+                // Last index entry at or before 'from'
+                int low = 0;
+                int high = (int) (indexSize / INDEX_ENTRY_BYTES) - 1;
+                while (low < high) {
+                    int mid = (low + high + 1) >>> 1;
+                    if (indexMap.getLong(mid * INDEX_ENTRY_BYTES) <= from) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                long startRecord = indexMap.getLong(low * INDEX_ENTRY_BYTES + 8);
+
+                long offset = HEADER_BYTES + startRecord * RECORD_BYTES;
+                MappedByteBuffer data = segmentChannel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        (recordCount - startRecord) * RECORD_BYTES);
+                while (data.remaining() >= RECORD_BYTES) {
+                    long stamp = data.getLong();
+                    long bet = data.getLong();
+                    long winnings = data.getLong();
+                    long balance = data.getLong();
+                    long timestamp = stamp & ~WIN_FLAG;
+                    if (timestamp > to) {
+                        return;
+                    }
+                    if (timestamp >= from) {
+                        visitor.visit(timestamp, stamp < 0, bet, winnings, balance);
+                    }
+                }
+            }
+        }
+    }
+
+    // The newest count records, oldest first, read back from the end of the last segments; they carry no seed
+    public static List<LogEntry> last(Path directory, int count) throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        List<Path> segments = listSegments(directory);
+        for (int i = segments.size() - 1; i >= 0 && entries.size() < count; i--) {
+            try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                long recordCount = Math.max(0, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+                int taken = (int) Math.min(count - entries.size(), recordCount);
+                ByteBuffer data = ByteBuffer.allocate(taken * RECORD_BYTES);
+                long offset = HEADER_BYTES + (recordCount - taken) * RECORD_BYTES;
+                while (data.hasRemaining()) {
+                    if (channel.read(data, offset + data.position()) < 0) {
+                        break;
+                    }
+                }
+                data.flip();
+                List<LogEntry> segmentEntries = new ArrayList<>(taken);
+                while (data.remaining() >= RECORD_BYTES) {
+                    long stamp = data.getLong();
+                    segmentEntries.add(new LogEntry(stamp & ~WIN_FLAG, stamp < 0, data.getLong(), data.getLong(),
+                            data.getLong()));
+                }
+                entries.addAll(0, segmentEntries);
+            }
+        }
+        return entries;
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(Comparator.comparingInt(BinaryGameLog::segmentNumber));
+        return segments;
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".dat".length()));
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("segment-%06d.dat", number));
+    }
+
+    private static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - ".dat".length()) + ".idx");
+    }
+}
+
+// LOG DURABILITY - How far each batch is pushed before the writer considers it done
+enum LogDurability {
+    NONE,   // batches stay in memory until the buffer fills, drain() or close()
+    FLUSH,  // every batch is written to the operating system
+    FSYNC   // every batch is written and forced to the storage device
+}
+
+// LOG SEGMENT - One sealed piece of the text log, oldest first by sequence number
+// Compressed file <prefix>-<seq>.seg: 36-byte header (magic "MSZ1", first and last timestamp, record count,
+// uncompressed bytes), then the segment's original bytes gzipped. <prefix>-<seq>.txt is a sealed segment
+// still waiting for the compressor; its header fields are unknown (-1).
+final class LogSegment {
+    static final int HEADER_BYTES = 36;
+    static final int MAGIC = 0x4D535A31;
+
+    private final long sequence;
+    private final Path path;
+    private final boolean compressed;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long records;
+    private final long rawBytes;
+
+    private LogSegment(long sequence, Path path, boolean compressed, long firstTimestamp, long lastTimestamp,
+                       long records, long rawBytes) {
+        this.sequence = sequence;
+        this.path = path;
+        this.compressed = compressed;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.records = records;
+        this.rawBytes = rawBytes;
+    }
+
+    // Sealed segments of the log whose file name starts with prefix, oldest first; only headers are read
+    public static List<LogSegment> list(Path directory, String prefix) throws IOException {
+        List<LogSegment> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length() + 1, Math.max(prefix.length() + 1,
+                        name.length() - 4));
+                if (number.isEmpty() || !number.chars().allMatch(Character::isDigit)) {
+                    continue;
+                }
+                if (name.endsWith(".seg")) {
+                    segments.add(readHeader(Long.parseLong(number), file));
+                } else if (name.endsWith(".txt")) {
+                    segments.add(new LogSegment(Long.parseLong(number), file, false, -1, -1, -1, Files.size(file)));
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(LogSegment::getSequence));
+        return segments;
+    }
+
+    private static LogSegment readHeader(long sequence, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a log segment: " + file);
+            }
+            return new LogSegment(sequence, file, true, in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    // The segment's original text bytes, decompressed if needed
+    public InputStream openContent() throws IOException {
+        Path file = this.path;
+        if (!this.compressed) {
+            try {
+                return new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+            } catch (NoSuchFileException e) {
+                // Compressed since it was listed
+                String name = file.getFileName().toString();
+                file = file.resolveSibling(name.substring(0, name.length() - 4) + ".seg");
+            }
+        }
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        in.skipNBytes(HEADER_BYTES);
+        return new java.util.zip.GZIPInputStream(in, 64 * 1024);
+    }
+
+    // Lines of the segment, oldest first
+    public List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openContent(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    public long getFirstTimestamp() {
+        return this.firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    public long getRecords() {
+        return this.records;
+    }
+
+    public long getRawBytes() {
+        return this.rawBytes;
+    }
+}
+
+// LOG SEGMENT STORE - Seals the active text log into numbered segments and compresses them off the writer thread
+// Sealing is a rename done by the log writer between batches; a background thread then gzips the segment
+// behind its header. Segments left uncompressed by a crash are compressed on the next start.
+class LogSegmentStore {
+    private final Path active;
+    private final Path directory;
+    private final String prefix;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final int maxSegments;
+    private final ExecutorService compressor;
+    private long nextSequence; // log writer thread only
+
+    // maxBytes / maxAgeMillis of 0 disable that limit; maxSegments of 0 keeps every compressed segment
+    public LogSegmentStore(Path active, Path directory, long maxBytes, long maxAgeMillis, int maxSegments) {
+        this.active = active;
+        this.directory = directory;
+        this.prefix = prefixOf(active);
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxSegments = maxSegments;
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "game-log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recover();
+    }
+
+    // Settings: -Dminestake.log.segmentBytes (default 4 MiB), -Dminestake.log.segmentMinutes,
+    // -Dminestake.log.maxSegments, -Dminestake.log.segmentDir; null when both limits are 0
+    public static LogSegmentStore fromSystemProperties(String path) {
+        long maxBytes = Long.getLong("minestake.log.segmentBytes", 4L << 20);
+        long maxMinutes = Long.getLong("minestake.log.segmentMinutes", 0L);
+        if (maxBytes <= 0 && maxMinutes <= 0) {
+            return null;
+        }
+        Path active = Paths.get(path);
+        return new LogSegmentStore(active, directoryFor(active), maxBytes, maxMinutes * 60_000L,
+                Integer.getInteger("minestake.log.maxSegments", 0));
+    }
+
+    // Where the sealed segments of a log live, for readers as well as the writer
+    public static Path directoryFor(Path active) {
+        return active.resolveSibling(System.getProperty("minestake.log.segmentDir", "game_log_segments"));
+    }
+
+    // "game_log.txt" -> "game_log"
+    public static String prefixOf(Path active) {
+        String name = active.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    public boolean shouldSeal(long activeBytes, long openedMillis) {
+        return activeBytes > 0 && ((this.maxBytes > 0 && activeBytes >= this.maxBytes)
+                || (this.maxAgeMillis > 0 && System.currentTimeMillis() - openedMillis >= this.maxAgeMillis));
+    }
+
+    // Moves the active file into the segment directory; the caller has closed its channel
+    public void seal() throws IOException {
+        Files.createDirectories(this.directory);
+        long sequence = this.nextSequence++;
+        Path sealed = this.directory.resolve(name(sequence, ".txt"));
+        Files.move(this.active, sealed, StandardCopyOption.ATOMIC_MOVE);
+        this.compressor.execute(() -> compress(sealed, sequence));
+    }
+
+    // Waits for segments already handed to the compressor
+    public void close() {
+        this.compressor.shutdown();
+        try {
+            this.compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recover() {
+        try {
+            List<LogSegment> segments = LogSegment.list(this.directory, this.prefix);
+            this.nextSequence = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).getSequence() + 1;
+            for (LogSegment segment : segments) {
+                if (!segment.isCompressed()) {
+                    this.compressor.execute(() -> compress(segment.getPath(), segment.getSequence()));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading log segments: " + e.getMessage());
+            this.nextSequence = System.currentTimeMillis();
+        }
+    }
+
+    // Header values come from a first pass over the lines; the gzip pass copies the bytes unchanged
+    private void compress(Path raw, long sequence) {
+        Path target = this.directory.resolve(name(sequence, ".seg"));
+        Path temporary = this.directory.resolve(name(sequence, ".seg.tmp"));
+        try {
+            TextLogCodec codec = new TextLogCodec();
+            long first = 0;
+            long last = 0;
+            long records = 0;
+            try (BufferedReader reader = Files.newBufferedReader(raw, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LogEntry entry = codec.parse(line);
+                    if (entry != null) {
+                        first = records == 0 ? entry.getTimestamp() : first;
+                        last = entry.getTimestamp();
+                        records++;
+                    }
+                }
+            }
+            try (OutputStream file = Files.newOutputStream(temporary)) {
+                DataOutputStream header = new DataOutputStream(file);
+                header.writeInt(LogSegment.MAGIC);
+                header.writeLong(first);
+                header.writeLong(last);
+                header.writeLong(records);
+                header.writeLong(Files.size(raw));
+                header.flush();
+                java.util.zip.GZIPOutputStream gzip = new java.util.zip.GZIPOutputStream(file, 64 * 1024);
+                Files.copy(raw, gzip);
+                gzip.finish();
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(raw);
+            enforceRetention();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error compressing log segment " + raw + ": " + e.getMessage());
+        }
+    }
+
+    private void enforceRetention() throws IOException {
+        if (this.maxSegments <= 0) {
+            return;
+        }
+        List<LogSegment> compressed = new ArrayList<>();
+        for (LogSegment segment : LogSegment.list(this.directory, this.prefix)) {
+            if (segment.isCompressed()) {
+                compressed.add(segment);
+            }
+        }
+        for (int i = 0; i < compressed.size() - this.maxSegments; i++) {
+            Files.deleteIfExists(compressed.get(i).getPath());
+        }
+    }
+
+    private String name(long sequence, String suffix) {
+        return String.format("%s-%06d%s", this.prefix, sequence, suffix);
+    }
+}
+
+// GAME LOG WRITER - Background group-commit appender for game_log.txt and the optional binary log
+class GameLogWriter implements Runnable {
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    private final String path;
+    private final LogDurability durability;
+    private final long flushIntervalNanos;
+    private final MpscRingBuffer<LogEntry> queue;
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+    private final TextLogCodec codec = new TextLogCodec();
+    private final boolean writeText;
+    private final BinaryGameLog binaryLog;
+    private final LogSegmentStore segments;
+    private final Thread thread;
+
+    private FileChannel channel;
+    private long activeBytes;
+    private long activeOpenedMillis;
+    private long consumedCount;
+    private volatile long writtenCount;
+    private volatile long drainTarget;
+    private volatile boolean closed;
+    private volatile LongConsumer batchListener;
+
+    public GameLogWriter(String path, LogDurability durability, long flushIntervalMillis, int queueCapacity) {
+        this(path, durability, flushIntervalMillis, queueCapacity, true, null, null);
+    }
+
+    // binaryLog and segments may be null; writeText=false keeps only the binary log
+    public GameLogWriter(String path, LogDurability durability, long flushIntervalMillis, int queueCapacity,
+                         boolean writeText, BinaryGameLog binaryLog, LogSegmentStore segments) {
+        this.path = path;
+        this.durability = durability;
+        this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+        this.queue = new MpscRingBuffer<>(queueCapacity);
+        this.writeText = writeText;
+        this.binaryLog = binaryLog;
+        this.segments = segments;
+        this.thread = new Thread(this, "game-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "game-log-drain"));
+    }
+
+    // Settings: -Dminestake.log.durability=none|flush|fsync, -Dminestake.log.flushMillis, -Dminestake.log.queue,
+    // -Dminestake.log.format=text|binary|both, -Dminestake.log.binaryDir, segment settings in LogSegmentStore
+    public static GameLogWriter fromSystemProperties(String path) {
+        LogDurability durability = LogDurability.valueOf(
+                System.getProperty("minestake.log.durability", "flush").toUpperCase());
+        long flushMillis = Long.getLong("minestake.log.flushMillis", 100L);
+        int capacity = Integer.getInteger("minestake.log.queue", 4096);
+        String format = System.getProperty("minestake.log.format", "text");
+
+        BinaryGameLog binaryLog = null;
+        if (format.equals("binary") || format.equals("both")) {
+            binaryLog = new BinaryGameLog(Paths.get(System.getProperty("minestake.log.binaryDir", "game_log_bin")),
+                    1 << 20);
+        }
+        boolean writeText = !format.equals("binary");
+        return new GameLogWriter(path, durability, flushMillis, capacity, writeText, binaryLog,
+                writeText ? LogSegmentStore.fromSystemProperties(path) : null);
+    }
+
+    // Null unless -Dminestake.log.format is binary or both
+    public BinaryGameLog getBinaryLog() {
+        return this.binaryLog;
+    }
+
+    public boolean writesText() {
+        return this.writeText;
+    }
+
+    // Told, on the writer thread, how many entries each batch put on disk
+    public void setBatchListener(LongConsumer listener) {
+        this.batchListener = listener;
+    }
+
+    // Called from game threads - only blocks (spinning then parking) when the queue is full
+    public void append(LogEntry entry) {
+        if (this.closed) {
+            throw new IllegalStateException("Log writer is closed");
+        }
+        int spins = 0;
+        while (!this.queue.offer(entry)) {
+            LockSupport.unpark(this.thread);
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(50_000L);
+            }
+        }
+    }
+
+    // Blocks until every entry appended before this call has reached the file
+    public void drain() {
+        long target = this.queue.producedCount();
+        if (target > this.drainTarget) {
+            this.drainTarget = target;
+        }
+        while (this.writtenCount < target && this.thread.isAlive()) {
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(100_000L);
+        }
+    }
+
+    // Drains outstanding entries and stops the writer thread
+    public void close() {
+        drain();
+        this.closed = true;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            boolean stopping = this.closed;
+            LogEntry entry;
+            while ((entry = this.queue.poll()) != null) {
+                if (this.writeText) {
+                    if (this.batch.remaining() < TextLogCodec.MAX_LINE_BYTES) {
+                        writeBatch();
+                    }
+                    this.codec.encode(entry, this.batch);
+                }
+                if (this.binaryLog != null) {
+                    try {
+                        this.binaryLog.append(entry);
+                    } catch (IOException e) {
+                        System.out.println("Error writing binary log: " + e.getMessage());
+                    }
+                }
+                this.consumedCount++;
+            }
+
+            if (this.durability != LogDurability.NONE || stopping || this.drainTarget > this.writtenCount) {
+                writeBatch();
+            }
+            if (stopping && this.queue.isEmpty()) {
+                break;
+            }
+            LockSupport.parkNanos(this, this.flushIntervalNanos);
+        }
+        closeChannels();
+    }
+
+    // One write (and optionally one fsync) for everything encoded since the last batch
+    private void writeBatch() {
+        long start = GameMetrics.start();
+        if (this.batch.position() > 0) {
+            this.batch.flip();
+            try {
+                if (this.channel == null) {
+                    this.channel = FileChannel.open(Paths.get(this.path), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    this.activeBytes = this.channel.size();
+                    this.activeOpenedMillis = System.currentTimeMillis();
+                }
+                while (this.batch.hasRemaining()) {
+                    this.activeBytes += this.channel.write(this.batch);
+                }
+                if (this.durability == LogDurability.FSYNC) {
+                    this.channel.force(false);
+                }
+                if (this.segments != null && this.segments.shouldSeal(this.activeBytes, this.activeOpenedMillis)) {
+                    // The next batch reopens a fresh game_log.txt
+                    this.channel.close();
+                    this.channel = null;
+                    this.segments.seal();
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing to log file: " + e.getMessage());
+            }
+            this.batch.clear();
+        }
+        if (this.binaryLog != null) {
+            try {
+                this.binaryLog.flush(this.durability == LogDurability.FSYNC);
+            } catch (IOException e) {
+                System.out.println("Error writing binary log: " + e.getMessage());
+            }
+        }
+        long newlyWritten = this.consumedCount - this.writtenCount;
+        this.writtenCount = this.consumedCount;
+        if (newlyWritten > 0) {
+            GameMetrics.recordSince(GameMetrics.LOG_BATCH_WRITE, start);
+            GameMetrics.LOG_ENTRIES_WRITTEN.add(newlyWritten);
+        }
+        LongConsumer listener = this.batchListener;
+        if (newlyWritten > 0 && listener != null) {
+            listener.accept(newlyWritten);
+        }
+    }
+
+    private void closeChannels() {
+        try {
+            if (this.channel != null) {
+                this.channel.close();
+            }
+            if (this.binaryLog != null) {
+                this.binaryLog.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing file: " + e.getMessage());
+        }
+        if (this.segments != null) {
+            this.segments.close();
+        }
+    }
+}
+
+// LOG CONVERTER - Converts between game_log.txt and the binary segment format, and answers time-range queries
+class LogConverter {
+    // Usage: convert-log to-binary <text file> <binary dir> | convert-log to-text <binary dir> <text file>
+    public static void convert(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: convert-log to-binary <text file> <binary dir>");
+            System.out.println("       convert-log to-text <binary dir> <text file>");
+            return;
+        }
+        try {
+            if (args[0].equals("to-binary")) {
+                System.out.println("Converted " + toBinary(Paths.get(args[1]), Paths.get(args[2])) + " records.");
+            } else if (args[0].equals("to-text")) {
+                System.out.println("Converted " + toText(Paths.get(args[1]), Paths.get(args[2])) + " records.");
+            } else {
+                System.out.println("Unknown direction: " + args[0]);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Conversion failed: " + e.getMessage());
+        }
+    }
+
+    // Usage: log-range <binary dir> <from> <to> with ISO dates (2025-10-31) or date-times (2025-10-31T09:50)
+    public static void printRange(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: log-range <binary dir> <from> <to>");
+            return;
+        }
+        long from = parseTime(args[1], false);
+        long to = parseTime(args[2], true);
+        TextLogCodec codec = new TextLogCodec();
+        ByteBuffer line = ByteBuffer.allocate(TextLogCodec.MAX_LINE_BYTES);
+        try {
+            BinaryGameLog.query(Paths.get(args[0]), from, to, (timestamp, won, bet, winnings, balance) -> {
+                line.clear();
+                codec.encode(new LogEntry(timestamp, won, bet, winnings, balance), line);
+                System.out.print(new String(line.array(), 0, line.position(), StandardCharsets.US_ASCII));
+            });
+        } catch (IOException e) {
+            System.out.println("Query failed: " + e.getMessage());
+        }
+    }
+
+    public static long toBinary(Path textFile, Path directory) throws IOException {
+        TextLogCodec codec = new TextLogCodec();
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(textFile, StandardCharsets.UTF_8);
+             BinaryGameLog log = new BinaryGameLog(directory, 1 << 20)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogEntry entry = codec.parse(line);
+                if (entry != null) {
+                    log.append(entry);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public static long toText(Path directory, Path textFile) throws IOException {
+        TextLogCodec codec = new TextLogCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long[] count = new long[1];
+        try (FileChannel out = FileChannel.open(textFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            BinaryGameLog.query(directory, 0, Long.MAX_VALUE >>> 1, (timestamp, won, bet, winnings, balance) -> {
+                if (buffer.remaining() < TextLogCodec.MAX_LINE_BYTES) {
+                    flush(out, buffer);
+                }
+                codec.encode(new LogEntry(timestamp, won, bet, winnings, balance), buffer);
+                count[0]++;
+            });
+            flush(out, buffer);
+        }
+        return count[0];
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private static long parseTime(String text, boolean endOfRange) {
+        java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+        if (text.contains("T")) {
+            return java.time.LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli();
+        }
+        java.time.LocalDate date = java.time.LocalDate.parse(text);
+        if (endOfRange) {
+            return date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+        }
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
+
+// GAME HISTORY READER - Reads game_log.txt backwards from the end, so cost follows lines read, not file size
+class GameHistoryReader implements Closeable {
+    private static final int CHUNK_BYTES = 8192;
+
+    private final FileChannel channel;
+
+    public GameHistoryReader(String path) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    }
+
+    // The last 'count' lines, oldest first
+    public List<String> lastLines(int count) {
+        String[] lines = new String[count];
+        int found = 0;
+        Iterator<String> iterator = newestFirst();
+        while (found < count && iterator.hasNext()) {
+            lines[count - 1 - found++] = iterator.next();
+        }
+        return Arrays.asList(lines).subList(count - found, count);
+    }
+
+    // Pages further back through history on demand; empty lines are skipped
+    public Iterator<String> newestFirst() {
+        return new Iterator<String>() {
+            private long position = size();      // file bytes before this offset are not loaded yet
+            private byte[] window = new byte[0]; // loaded bytes not yet returned as lines
+            private int windowEnd = 0;
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next == null) {
+                    this.next = readPreviousLine();
+                }
+                return this.next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = this.next;
+                this.next = null;
+                return line;
+            }
+
+            private String readPreviousLine() {
+                while (true) {
+                    for (int i = this.windowEnd - 1; i >= 0; i--) {
+                        if (this.window[i] == '\n') {
+                            String line = decode(this.window, i + 1, this.windowEnd);
+                            this.windowEnd = i;
+                            if (!line.isEmpty()) {
+                                return line;
+                            }
+                        }
+                    }
+                    if (this.position == 0) {
+                        // Whatever is left is the first line of the file
+                        String line = decode(this.window, 0, this.windowEnd);
+                        this.windowEnd = 0;
+                        return line.isEmpty() ? null : line;
+                    }
+                    loadPreviousChunk();
+                }
+            }
+
+            // Prepends the previous chunk to the unread part of the window
+            private void loadPreviousChunk() {
+                int length = (int) Math.min(CHUNK_BYTES, this.position);
+                byte[] grown = new byte[length + this.windowEnd];
+                System.arraycopy(this.window, 0, grown, length, this.windowEnd);
+                this.position -= length;
+                readFully(ByteBuffer.wrap(grown, 0, length), this.position);
+                this.window = grown;
+                this.windowEnd = grown.length;
+            }
+        };
+    }
+
+    private long size() {
+        try {
+            return this.channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) {
+        try {
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
+
+// DAY STATS - Mergeable totals for a contiguous run of one day's rounds
+// Loss runs touching either end are kept apart, so two runs split across chunks join up on merge
+class DayStats {
+    static final String[] BET_BUCKETS = {"<10", "10-99", "100-999", "1k-9.9k", "10k+"};
+
+    private long rounds;
+    private long wins;
+    private long betPaise;
+    private long winningsPaise;
+    private long leadingLosses;
+    private long trailingLosses;
+    private long longestLossStreak;
+    private final long[] betBuckets = new long[BET_BUCKETS.length];
+
+    public void recordRound(boolean won, long bet, long winnings) {
+        this.rounds++;
+        this.betPaise += bet;
+        this.winningsPaise += winnings;
+        this.betBuckets[bucketOf(bet)]++;
+        if (won) {
+            this.wins++;
+            this.trailingLosses = 0;
+        } else {
+            if (this.leadingLosses == this.rounds - 1) {
+                this.leadingLosses++;
+            }
+            this.trailingLosses++;
+            this.longestLossStreak = Math.max(this.longestLossStreak, this.trailingLosses);
+        }
+    }
+
+    // Appends rounds that came after this run in the log
+    public DayStats append(DayStats later) {
+        this.longestLossStreak = Math.max(Math.max(this.longestLossStreak, later.longestLossStreak),
+                this.trailingLosses + later.leadingLosses);
+        if (this.leadingLosses == this.rounds) {
+            this.leadingLosses += later.leadingLosses;
+        }
+        this.trailingLosses = later.trailingLosses == later.rounds
+                ? this.trailingLosses + later.rounds : later.trailingLosses;
+        this.rounds += later.rounds;
+        this.wins += later.wins;
+        this.betPaise += later.betPaise;
+        this.winningsPaise += later.winningsPaise;
+        for (int i = 0; i < this.betBuckets.length; i++) {
+            this.betBuckets[i] += later.betBuckets[i];
+        }
+        return this;
+    }
+
+    // Decades of rupees: below Rs.10, Rs.10-99, ... Rs.10000 and up
+    private static int bucketOf(long betPaise) {
+        int bucket = 0;
+        for (long limit = 1000; bucket < BET_BUCKETS.length - 1 && betPaise >= limit; limit *= 10) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    public long getRounds() {
+        return this.rounds;
+    }
+
+    public double getWinRate() {
+        return this.rounds == 0 ? 0.0 : (double) this.wins / this.rounds;
+    }
+
+    // Paid out over wagered
+    public double getRtp() {
+        return this.betPaise == 0 ? 0.0 : (double) this.winningsPaise / this.betPaise;
+    }
+
+    public long getBetPaise() {
+        return this.betPaise;
+    }
+
+    public long getWinningsPaise() {
+        return this.winningsPaise;
+    }
+
+    public long getLongestLossStreak() {
+        return this.longestLossStreak;
+    }
+
+    public long getBetBucket(int bucket) {
+        return this.betBuckets[bucket];
+    }
+
+    // Checkpoint form: space-separated counters in field order
+    public String toFields() {
+        StringBuilder fields = new StringBuilder();
+        fields.append(this.rounds).append(' ').append(this.wins).append(' ').append(this.betPaise).append(' ')
+                .append(this.winningsPaise).append(' ').append(this.leadingLosses).append(' ')
+                .append(this.trailingLosses).append(' ').append(this.longestLossStreak);
+        for (long count : this.betBuckets) {
+            fields.append(' ').append(count);
+        }
+        return fields.toString();
+    }
+
+    public static DayStats fromFields(String[] fields, int offset) {
+        DayStats stats = new DayStats();
+        stats.rounds = Long.parseLong(fields[offset]);
+        stats.wins = Long.parseLong(fields[offset + 1]);
+        stats.betPaise = Long.parseLong(fields[offset + 2]);
+        stats.winningsPaise = Long.parseLong(fields[offset + 3]);
+        stats.leadingLosses = Long.parseLong(fields[offset + 4]);
+        stats.trailingLosses = Long.parseLong(fields[offset + 5]);
+        stats.longestLossStreak = Long.parseLong(fields[offset + 6]);
+        for (int i = 0; i < stats.betBuckets.length; i++) {
+            stats.betBuckets[i] = Long.parseLong(fields[offset + 7 + i]);
+        }
+        return stats;
+    }
+}
+
+// LOG CHUNK PARSER - Reads one line-aligned byte range of game_log.txt into per-day totals
+// Lines are parsed in place from the read buffer: no Strings, no regex, no split
+class LogChunkParser {
+    private static final int READ_BYTES = 64 * 1024;
+    private static final byte[] WIN = " | WIN | ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOSS = " | LOSS | ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RUPEES = "Rs.".getBytes(StandardCharsets.US_ASCII);
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private final TreeMap<Integer, DayStats> days = new TreeMap<>();
+    private int currentDay = -1;
+    private DayStats current;
+    private long lines;
+    private long skipped;
+    private int cursor; // where the last parsed amount ended
+
+    private final byte[] bytes = new byte[READ_BYTES];
+    private int filled;       // bytes in the buffer not yet parsed
+    private boolean overlong; // inside a line longer than the buffer, which is skipped
+
+    // One line-aligned range of an uncompressed log; positional reads, so ranges can share the channel
+    public static LogChunkParser parse(FileChannel channel, long from, long to) throws IOException {
+        LogChunkParser parser = new LogChunkParser();
+        ByteBuffer buffer = ByteBuffer.wrap(parser.bytes);
+        long position = from;
+        while (position < to) {
+            buffer.limit((int) Math.min(parser.bytes.length, parser.filled + (to - position)));
+            buffer.position(parser.filled);
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+            parser.scan(read);
+        }
+        parser.finish();
+        return parser;
+    }
+
+    // A whole stream, e.g. a decompressed log segment
+    public static LogChunkParser parse(InputStream in) throws IOException {
+        LogChunkParser parser = new LogChunkParser();
+        int read;
+        while ((read = in.read(parser.bytes, parser.filled, parser.bytes.length - parser.filled)) >= 0) {
+            parser.scan(read);
+        }
+        parser.finish();
+        return parser;
+    }
+
+    // Parses every complete line in the buffer and keeps the unfinished tail for the next read
+    private void scan(int read) {
+        int scanFrom = this.filled;
+        this.filled += read;
+        int lineStart = 0;
+        for (int i = scanFrom; i < this.filled; i++) {
+            if (this.bytes[i] == '\n') {
+                if (this.overlong) {
+                    this.overlong = false;
+                } else {
+                    line(this.bytes, lineStart, i);
+                }
+                lineStart = i + 1;
+            }
+        }
+        System.arraycopy(this.bytes, lineStart, this.bytes, 0, this.filled - lineStart);
+        this.filled -= lineStart;
+        if (this.filled == this.bytes.length) {
+            this.lines++;
+            this.skipped++;
+            this.overlong = true;
+            this.filled = 0;
+        }
+    }
+
+    private void finish() {
+        if (this.filled > 0 && !this.overlong) {
+            line(this.bytes, 0, this.filled);
+        }
+        this.filled = 0;
+    }
+
+    private void line(byte[] b, int from, int to) {
+        if (to > from && b[to - 1] == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return;
+        }
+        this.lines++;
+        int bar = indexOf(b, from, to, (byte) '|');
+        int day = bar < 0 ? -1 : dayKey(b, from, bar - 1);
+        boolean won = bar >= 0 && matches(b, bar - 1, to, WIN);
+        if (day < 0 || (!won && !matches(b, bar - 1, to, LOSS))) {
+            this.skipped++;
+            return;
+        }
+        long bet = amountAfter(b, bar, to);
+        long winnings = bet < 0 ? -1 : amountAfter(b, this.cursor, to);
+        if (winnings < 0) {
+            this.skipped++;
+            return;
+        }
+        if (day != this.currentDay) {
+            this.currentDay = day;
+            this.current = this.days.computeIfAbsent(day, key -> new DayStats());
+        }
+        this.current.recordRound(won, bet, winnings);
+    }
+
+    // "Sun Oct 26 19:39:46 IST 2025" -> 20251026; -1 when the text is not a Date.toString() date
+    private static int dayKey(byte[] b, int from, int to) {
+        if (to - from < 24 || b[from + 3] != ' ' || b[from + 7] != ' ' || b[to - 5] != ' ') {
+            return -1;
+        }
+        int month = -1;
+        for (int m = 0; m < 12; m++) {
+            if (b[from + 4] == MONTHS.charAt(m * 3) && b[from + 5] == MONTHS.charAt(m * 3 + 1)
+                    && b[from + 6] == MONTHS.charAt(m * 3 + 2)) {
+                month = m + 1;
+                break;
+            }
+        }
+        int dayOfMonth = digits(b, from + 8, from + 10);
+        int year = digits(b, to - 4, to);
+        if (month < 0 || dayOfMonth < 0 || year < 0) {
+            return -1;
+        }
+        return year * 10000 + month * 100 + dayOfMonth;
+    }
+
+    private static int digits(byte[] b, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (b[i] - '0');
+        }
+        return value;
+    }
+
+    // Paise of the first "Rs.<amount>" at or after from; -1 when there is none
+    private long amountAfter(byte[] b, int from, int to) {
+        int i = from;
+        while (i <= to - RUPEES.length && !matches(b, i, to, RUPEES)) {
+            i++;
+        }
+        i += RUPEES.length;
+        if (i >= to) {
+            return -1;
+        }
+        boolean negative = b[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long rupees = 0;
+        int start = i;
+        while (i < to && b[i] >= '0' && b[i] <= '9') {
+            rupees = rupees * 10 + (b[i++] - '0');
+        }
+        if (i == start) {
+            return -1;
+        }
+        long paise = 0;
+        if (i < to && b[i] == '.') {
+            i++;
+            for (int place = 10; place > 0; place /= 10) {
+                if (i < to && b[i] >= '0' && b[i] <= '9') {
+                    paise += (b[i++] - '0') * place;
+                }
+            }
+        }
+        this.cursor = i;
+        // A negative amount never belongs in a bet or a payout
+        return negative ? -1 : rupees * 100 + paise;
+    }
+
+    private static boolean matches(byte[] b, int at, int to, byte[] expected) {
+        if (at < 0 || at + expected.length > to) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (b[at + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public TreeMap<Integer, DayStats> getDays() {
+        return this.days;
+    }
+
+    public long getLines() {
+        return this.lines;
+    }
+
+    public long getSkipped() {
+        return this.skipped;
+    }
+}
+
+// LOG ANALYTICS - Per-day win rate, realized RTP, loss streaks and bet sizes over game_log.txt and its segments
+// Each unread sealed segment is one task and the unread part of the active log is cut into byte ranges ending
+// on line boundaries; all are parsed in parallel and merged in log order. A checkpoint beside the log keeps the
+// totals, the last segment counted and the offset reached, so a rerun skips counted segments without opening
+// them and only parses lines appended since; it is discarded if the start of the log no longer matches.
+class LogAnalytics {
+    private static final String CHECKPOINT_MAGIC = "MSA2";
+    private static final int FINGERPRINT_BYTES = 4096;
+    private static final int ALIGN_BYTES = 512;
+
+    // Usage: analyze-log [file] [threads] [--full]
+    public static void run(String[] args) {
+        List<String> positional = new ArrayList<>();
+        boolean full = false;
+        for (String arg : args) {
+            if (arg.equals("--full")) {
+                full = true;
+            } else {
+                positional.add(arg);
+            }
+        }
+        Path log = Paths.get(positional.size() > 0 ? positional.get(0) : "game_log.txt");
+        int threads = positional.size() > 1 ? Integer.parseInt(positional.get(1))
+                : Runtime.getRuntime().availableProcessors();
+        Path checkpoint = Paths.get(log + ".analytics");
+
+        try {
+            analyze(log, checkpoint, threads, full);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Analysis failed: " + e.getMessage());
+        }
+    }
+
+    private static void analyze(Path log, Path checkpoint, int threads, boolean full) throws IOException {
+        Path directory = LogSegmentStore.directoryFor(log);
+        String prefix = LogSegmentStore.prefixOf(log);
+        TreeMap<Integer, DayStats> days = new TreeMap<>();
+        // {last sealed segment counted, offset reached in the file that was then active, its fingerprint}
+        long[] resume = !full && Files.exists(checkpoint) ? readCheckpoint(checkpoint, days) : null;
+
+        // The active file is opened between two matching segment listings, so a seal racing with this run
+        // can neither hide lines from it nor count them twice
+        List<LogSegment> segments = LogSegment.list(directory, prefix);
+        FileChannel channel;
+        while (true) {
+            channel = Files.exists(log) ? FileChannel.open(log, StandardOpenOption.READ) : null;
+            List<LogSegment> again = LogSegment.list(directory, prefix);
+            if (sequences(again).equals(sequences(segments))) {
+                break;
+            }
+            if (channel != null) {
+                channel.close();
+            }
+            segments = again;
+        }
+
+        try {
+            long sealedThrough = 0;
+            long skipSealed = 0;  // bytes of the first new segment already counted while it was active
+            long start = 0;       // where reading of the active file starts
+            if (resume != null) {
+                List<LogSegment> newer = newerThan(segments, resume[0]);
+                long offset = resume[1];
+                sealedThrough = resume[0];
+                if (offset == 0) {
+                    start = 0;
+                } else if (newer.isEmpty() && channel != null && channel.size() >= offset
+                        && fingerprint(channel, offset) == resume[2]) {
+                    start = offset;
+                } else if (!newer.isEmpty() && fingerprint(newer.get(0), offset) == resume[2]) {
+                    skipSealed = offset;
+                } else {
+                    System.out.println("Log no longer matches its checkpoint; analyzing from the start.");
+                    days.clear();
+                    sealedThrough = 0;
+                }
+            }
+            List<LogSegment> unread = newerThan(segments, sealedThrough);
+
+            long began = System.nanoTime();
+            List<Callable<LogChunkParser>> tasks = new ArrayList<>();
+            long bytes = 0;
+            for (int i = 0; i < unread.size(); i++) {
+                LogSegment segment = unread.get(i);
+                long skip = i == 0 ? skipSealed : 0;
+                bytes += segment.getRawBytes() - skip;
+                tasks.add(() -> {
+                    try (InputStream in = segment.openContent()) {
+                        in.skipNBytes(skip);
+                        return LogChunkParser.parse(in);
+                    }
+                });
+            }
+            // A line the writer has not finished yet is left for the next run
+            long end = channel == null ? 0 : lastLineEnd(channel, start);
+            if (channel != null) {
+                long[] bounds = splitPoints(channel, start, end, threads);
+                FileChannel active = channel;
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    tasks.add(() -> LogChunkParser.parse(active, from, to));
+                }
+                bytes += end - start;
+            }
+
+            long lines = 0;
+            long skipped = 0;
+            ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+            try {
+                for (Future<LogChunkParser> chunk : workers.invokeAll(tasks)) {
+                    LogChunkParser parsed = chunk.get();
+                    lines += parsed.getLines();
+                    skipped += parsed.getSkipped();
+                    for (Map.Entry<Integer, DayStats> day : parsed.getDays().entrySet()) {
+                        days.merge(day.getKey(), day.getValue(), DayStats::append);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException(e.getCause());
+            } finally {
+                workers.shutdown();
+            }
+            double seconds = (System.nanoTime() - began) / 1e9;
+
+            long lastSealed = segments.isEmpty() ? sealedThrough : segments.get(segments.size() - 1).getSequence();
+            writeCheckpoint(checkpoint, Math.max(sealedThrough, lastSealed), end,
+                    channel == null ? 0 : fingerprint(channel, end), days);
+            printReport(days);
+            System.out.println(String.format("Parsed %d new lines (%d bytes, %d skipped) from %d sealed segment(s) "
+                            + "and the active log in %d task(s) in %.3fs; checkpoint at byte %d.", lines, bytes,
+                    skipped, unread.size(), tasks.size(), seconds, end));
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private static List<LogSegment> newerThan(List<LogSegment> segments, long sequence) {
+        List<LogSegment> newer = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            if (segment.getSequence() > sequence) {
+                newer.add(segment);
+            }
+        }
+        return newer;
+    }
+
+    private static List<Long> sequences(List<LogSegment> segments) {
+        List<Long> sequences = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            sequences.add(segment.getSequence());
+        }
+        return sequences;
+    }
+
+    // Offset just past the last newline at or after from; from itself if none was appended
+    private static long lastLineEnd(FileChannel channel, long from) throws IOException {
+        long position = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(ALIGN_BYTES);
+        while (position > from) {
+            int length = (int) Math.min(ALIGN_BYTES, position - from);
+            buffer.clear().limit(length);
+            readFully(channel, buffer, position - length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position - length + i + 1;
+                }
+            }
+            position -= length;
+        }
+        return from;
+    }
+
+    // Range boundaries: evenly spaced, each moved forward to just past the next newline
+    private static long[] splitPoints(FileChannel channel, long start, long end, int ranges) throws IOException {
+        List<Long> points = new ArrayList<>();
+        points.add(start);
+        ByteBuffer buffer = ByteBuffer.allocate(ALIGN_BYTES);
+        for (int i = 1; i < ranges; i++) {
+            long position = Math.max(points.get(points.size() - 1), start + (end - start) * i / ranges);
+            boolean found = false;
+            while (!found && position < end) {
+                int length = (int) Math.min(ALIGN_BYTES, end - position);
+                buffer.clear().limit(length);
+                readFully(channel, buffer, position);
+                for (int j = 0; j < length && !found; j++) {
+                    if (buffer.get(j) == '\n') {
+                        position += j + 1;
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    position += length;
+                }
+            }
+            if (position < end && position > points.get(points.size() - 1)) {
+                points.add(position);
+            }
+        }
+        if (end > start) {
+            points.add(end);
+        }
+        long[] bounds = new long[points.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = points.get(i);
+        }
+        return bounds;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    // CRC of the start of the active log, so a truncated or replaced file is not mistaken for the checkpointed
+    // one, and the same file is recognised after it has been sealed into a segment
+    private static long fingerprint(FileChannel channel, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(FINGERPRINT_BYTES, length));
+        readFully(channel, buffer, 0);
+        buffer.flip();
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    private static long fingerprint(LogSegment segment, long length) throws IOException {
+        try (InputStream in = segment.openContent()) {
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(in.readNBytes((int) Math.min(FINGERPRINT_BYTES, length)));
+            return crc.getValue();
+        }
+    }
+
+    // Checkpoint file: "MSA2 <last sealed segment> <offset> <fingerprint>", then "<yyyymmdd> <DayStats fields>"
+    // per day; null when the file is from another version
+    private static long[] readCheckpoint(Path checkpoint, TreeMap<Integer, DayStats> days) throws IOException {
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.US_ASCII);
+        String[] header = lines.isEmpty() ? new String[0] : lines.get(0).split(" ");
+        if (header.length != 4 || !header[0].equals(CHECKPOINT_MAGIC)) {
+            return null;
+        }
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(" ");
+            days.put(Integer.parseInt(fields[0]), DayStats.fromFields(fields, 1));
+        }
+        return new long[] {Long.parseLong(header[1]), Long.parseLong(header[2]), Long.parseLong(header[3])};
+    }
+
+    // Written to a temporary file and moved into place, so an interrupted run leaves the old checkpoint
+    private static void writeCheckpoint(Path checkpoint, long sealedThrough, long offset, long fingerprint,
+                                        TreeMap<Integer, DayStats> days) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append(CHECKPOINT_MAGIC).append(' ').append(sealedThrough).append(' ').append(offset).append(' ')
+                .append(fingerprint).append('\n');
+        for (Map.Entry<Integer, DayStats> day : days.entrySet()) {
+            text.append(day.getKey()).append(' ').append(day.getValue().toFields()).append('\n');
+        }
+        Path temporary = Paths.get(checkpoint + ".tmp");
+        Files.write(temporary, text.toString().getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void printReport(TreeMap<Integer, DayStats> days) {
+        StringBuilder header = new StringBuilder(String.format("%-10s %7s %6s %12s %12s %7s %6s",
+                "Date", "Rounds", "Win%", "Wagered", "Paid", "RTP%", "Streak"));
+        for (String bucket : DayStats.BET_BUCKETS) {
+            header.append(String.format(" %7s", bucket));
+        }
+        System.out.println(header);
+        DayStats total = new DayStats();
+        for (Map.Entry<Integer, DayStats> day : days.entrySet()) {
+            int key = day.getKey();
+            printRow(String.format("%04d-%02d-%02d", key / 10000, key / 100 % 100, key % 100), day.getValue());
+            total.append(day.getValue());
+        }
+        printRow("Total", total);
+    }
+
+    private static void printRow(String label, DayStats stats) {
+        StringBuilder row = new StringBuilder(String.format("%-10s %7d %6.1f %12.2f %12.2f %7.2f %6d",
+                label, stats.getRounds(), stats.getWinRate() * 100, stats.getBetPaise() / 100.0,
+                stats.getWinningsPaise() / 100.0, stats.getRtp() * 100, stats.getLongestLossStreak()));
+        for (int i = 0; i < DayStats.BET_BUCKETS.length; i++) {
+            row.append(String.format(" %7d", stats.getBetBucket(i)));
+        }
+        System.out.println(row);
+    }
+}
+
+// GAME EVENT TYPE - What happened in a round
+enum GameEventType {
+    ROUND_STARTED,
+    TILE_REVEALED,
+    CASHED_OUT,
+    MINE_HIT,
+    LOG_WRITTEN
+}
+
+// GAME EVENT - One immutable notification, captured on the game thread and handled on the bus thread
+final class GameEvent {
+    private final GameEventType type;
+    private final GameEventSource source;
+    private final GameBoard board;
+    private final long multiplier;
+    private final long betPaise;
+    private final long winningsPaise;
+    private final long balancePaise;
+    private final long roundSeed;
+    private final long count;
+    private final long timestamp;
+
+    private GameEvent(GameEventType type, GameEventSource source, GameBoard board, long multiplier,
+                      long betPaise, long winningsPaise, long balancePaise, long roundSeed, long count,
+                      long timestamp) {
+        this.type = type;
+        this.source = source;
+        this.board = board;
+        this.multiplier = multiplier;
+        this.betPaise = betPaise;
+        this.winningsPaise = winningsPaise;
+        this.balancePaise = balancePaise;
+        this.roundSeed = roundSeed;
+        this.count = count;
+        this.timestamp = timestamp;
+    }
+
+    public static GameEvent roundStarted(GameEventSource source, GameBoard board, long betPaise) {
+        return new GameEvent(GameEventType.ROUND_STARTED, source, board, PayoutTable.ONE, betPaise, 0, 0,
+                board.getRoundSeed(), 0, System.currentTimeMillis());
+    }
+
+    // multiplier is in PayoutTable basis points; winningsPaise is what cashing out now would pay;
+    // tiles is the number of safe tiles, more than one for a batch reveal
+    public static GameEvent tileRevealed(GameEventSource source, int tiles, long multiplier, long betPaise,
+                                         long winningsPaise) {
+        return new GameEvent(GameEventType.TILE_REVEALED, source, null, multiplier, betPaise, winningsPaise, 0, 0,
+                tiles, System.currentTimeMillis());
+    }
+
+    // The board goes with the event so the round seed can be shown and logged once the round is over
+    public static GameEvent cashedOut(GameEventSource source, GameBoard board, long betPaise, long winningsPaise,
+                                          long balancePaise) {
+        return new GameEvent(GameEventType.CASHED_OUT, source, board, 0, betPaise, winningsPaise, balancePaise,
+                board.getRoundSeed(), 0, System.currentTimeMillis());
+    }
+
+    public static GameEvent mineHit(GameEventSource source, GameBoard board, long betPaise, long balancePaise) {
+        return new GameEvent(GameEventType.MINE_HIT, source, board, 0, betPaise, 0, balancePaise,
+                board.getRoundSeed(), 0, System.currentTimeMillis());
+    }
+
+    // Published by the log writer thread after a batch of entries reaches the file
+    public static GameEvent logWritten(long entries) {
+        return new GameEvent(GameEventType.LOG_WRITTEN, null, null, 0, 0, 0, 0, 0, entries,
+                System.currentTimeMillis());
+    }
+
+    public GameEventType getType() {
+        return this.type;
+    }
+
+    public GameEventSource getSource() {
+        return this.source;
+    }
+
+    public GameBoard getBoard() {
+        return this.board;
+    }
+
+    public long getMultiplier() {
+        return this.multiplier;
+    }
+
+    public long getBetPaise() {
+        return this.betPaise;
+    }
+
+    public long getWinningsPaise() {
+        return this.winningsPaise;
+    }
+
+    public long getBalancePaise() {
+        return this.balancePaise;
+    }
+
+    public long getRoundSeed() {
+        return this.roundSeed;
+    }
+
+    // Safe tiles for TILE_REVEALED, log entries for LOG_WRITTEN; 0 for the other types
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+}
+
+// GAME EVENT SOURCE - One session's link to the bus: where its events are logged, and the session's own queue
+// of events still to be shown to its player. That queue is rendered on the session's thread, so a client that
+// stops reading only holds up its own session. The game thread only waits on the bus thread at the end of the
+// session, for its last rounds to reach the log writer
+final class GameEventSource {
+    private final SessionIO io;
+    private final GameLogWriter logWriter;
+    private final BoardRenderer renderer;
+    private final GameEventSink console = new ConsoleEventSink();
+    private final ArrayDeque<GameEvent> pending = new ArrayDeque<>(); // session thread only
+    private long published;           // session thread only
+    private volatile long dispatched; // bus thread only
+    private volatile Thread waiter;
+
+    public GameEventSource(SessionIO io, GameLogWriter logWriter, BoardRenderer renderer) {
+        this.io = io;
+        this.logWriter = logWriter;
+        this.renderer = renderer;
+    }
+
+    public SessionIO getIO() {
+        return this.io;
+    }
+
+    public GameLogWriter getLogWriter() {
+        return this.logWriter;
+    }
+
+    // Session thread only
+    public BoardRenderer getRenderer() {
+        return this.renderer;
+    }
+
+    void enqueue(GameEvent event) {
+        this.pending.add(event);
+        this.published++;
+    }
+
+    // Bus thread - the event has been through every bus sink
+    void markDispatched() {
+        this.dispatched = this.dispatched + 1;
+        Thread thread = this.waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Session thread - returns once the bus sinks have seen every event this session published
+    public void awaitDispatched() {
+        long target = this.published;
+        if (this.dispatched >= target) {
+            return;
+        }
+        this.waiter = Thread.currentThread();
+        while (this.dispatched < target) {
+            LockSupport.parkNanos(this, 1_000_000L);
+        }
+        this.waiter = null;
+    }
+
+    // Session thread - renders the events published so far, in order; a failing render is reported and skipped
+    public void flush() {
+        GameEvent event;
+        while ((event = this.pending.poll()) != null) {
+            try {
+                this.console.onEvent(event);
+            } catch (RuntimeException e) {
+                System.out.println("Console output failed: " + e.getMessage());
+            }
+        }
+    }
+}
+
+// ORDERED SESSION I/O - The game thread's view of its session: the session's pending events are rendered
+// before each message or prompt, so event output and game output keep their order
+class OrderedSessionIO implements SessionIO {
+    private final SessionIO delegate;
+    private final GameEventSource events;
+
+    public OrderedSessionIO(SessionIO delegate, GameEventSource events) {
+        this.delegate = delegate;
+        this.events = events;
+    }
+
+    @Override
+    public String readLine() {
+        this.events.flush();
+        return this.delegate.readLine();
+    }
+
+    @Override
+    public void print(String text) {
+        this.events.flush();
+        this.delegate.print(text);
+    }
+
+    @Override
+    public void println(String text) {
+        this.events.flush();
+        this.delegate.println(text);
+    }
+
+    @Override
+    public void println() {
+        this.events.flush();
+        this.delegate.println();
+    }
+}
+
+// GAME EVENT SINK - A subscriber to game events; bus sinks run on the bus thread, the console sink on the
+// thread of the session the event came from
+interface GameEventSink {
+    void onEvent(GameEvent event);
+}
+
+// SINK 1 - Console messages for the session the event came from, rendered from that session's own queue
+class ConsoleEventSink implements GameEventSink {
+    @Override
+    public void onEvent(GameEvent event) {
+        if (event.getSource() == null) {
+            return;
+        }
+        SessionIO io = event.getSource().getIO();
+        switch (event.getType()) {
+            case ROUND_STARTED:
+                event.getSource().getRenderer().reset();
+                event.getBoard().describePlacement(io);
+                io.println(">> Game Started!");
+                break;
+            case TILE_REVEALED:
+                String diamonds = event.getCount() > 1 ? event.getCount() + " DIAMONDS" : "DIAMOND";
+                io.println("\n" + diamonds + " Safe! Multiplier: " + PayoutTable.formatMultiplier(event.getMultiplier())
+                        + "x");
+                io.println("Potential Winnings: Rs." + PayoutTable.formatHundredths(event.getWinningsPaise()));
+                break;
+            case CASHED_OUT:
+                io.println("\nCongratulations! You won Rs." + PayoutTable.formatHundredths(event.getWinningsPaise()));
+                printSeed(io, event);
+                break;
+            case MINE_HIT:
+                String lost = "\nBOOM! Mine hit! You lost Rs." + PayoutTable.formatHundredths(event.getBetPaise());
+                BoardRenderer renderer = event.getSource().getRenderer();
+                // An ANSI repaint clears everything below the board, so the message has to follow it
+                if (renderer.isAnsi()) {
+                    renderer.render(event.getBoard(), io);
+                    io.println(lost);
+                } else {
+                    io.println(lost);
+                    renderer.render(event.getBoard(), io);
+                }
+                printSeed(io, event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Only shown once the round is over, since the seed gives away the layout
+    private static void printSeed(SessionIO io, GameEvent event) {
+        GameBoard board = event.getBoard();
+        String size = board instanceof SparseBoard ? " " + board.getSize() : "";
+        io.println("Round seed: " + RngService.formatSeed(event.getRoundSeed()) + " (java MineStake replay-board "
+                + RngService.formatSeed(event.getRoundSeed()) + " " + board.getMineCount() + size + ")");
+    }
+}
+
+// SINK 2 - Finished rounds go to the session's game log writer
+class GameLogEventSink implements GameEventSink {
+    @Override
+    public void onEvent(GameEvent event) {
+        boolean won = event.getType() == GameEventType.CASHED_OUT;
+        if ((won || event.getType() == GameEventType.MINE_HIT) && event.getSource().getLogWriter() != null) {
+            event.getSource().getLogWriter().append(new LogEntry(event.getTimestamp(), won, event.getBetPaise(),
+                    event.getWinningsPaise(), event.getBalancePaise(), event.getRoundSeed()));
+        }
+    }
+}
+
+// SINK 3 - Running totals; written by the bus thread only, readable from any thread
+class MetricsEventSink implements GameEventSink {
+    private volatile long roundsStarted;
+    private volatile long tilesRevealed;
+    private volatile long cashOuts;
+    private volatile long minesHit;
+    private volatile long wageredPaise;
+    private volatile long paidOutPaise;
+    private volatile long logEntriesWritten;
+
+    @Override
+    public void onEvent(GameEvent event) {
+        switch (event.getType()) {
+            case ROUND_STARTED:
+                this.roundsStarted = this.roundsStarted + 1;
+                this.wageredPaise = this.wageredPaise + event.getBetPaise();
+                break;
+            case TILE_REVEALED:
+                this.tilesRevealed = this.tilesRevealed + event.getCount();
+                break;
+            case CASHED_OUT:
+                this.cashOuts = this.cashOuts + 1;
+                this.paidOutPaise = this.paidOutPaise + event.getWinningsPaise();
+                break;
+            case MINE_HIT:
+                this.minesHit = this.minesHit + 1;
+                break;
+            case LOG_WRITTEN:
+                this.logEntriesWritten = this.logEntriesWritten + event.getCount();
+                break;
+            default:
+                break;
+        }
+    }
+
+    public String summary() {
+        return "rounds " + this.roundsStarted + ", reveals " + this.tilesRevealed + ", cash-outs " + this.cashOuts
+                + ", mines hit " + this.minesHit + ", wagered Rs." + String.format("%.2f", this.wageredPaise / 100.0)
+                + ", paid Rs." + String.format("%.2f", this.paidOutPaise / 100.0)
+                + ", logged " + this.logEntriesWritten;
+    }
+}
+
+// GAME EVENT BUS - Many game threads publish into a ring buffer; one bus thread dispatches to every sink
+class GameEventBus implements Runnable {
+    private static final GameEventBus SHARED = createShared();
+
+    private final MpscRingBuffer<GameEvent> queue;
+    private final List<GameEventSink> sinks = new CopyOnWriteArrayList<>();
+    private final MetricsEventSink metrics = new MetricsEventSink();
+    private final Thread thread;
+    private volatile boolean idle;
+
+    public GameEventBus(int capacity) {
+        this.queue = new MpscRingBuffer<>(capacity);
+        this.sinks.add(this.metrics);
+        this.thread = new Thread(this, "game-events");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Queue size: -Dminestake.events.queue
+    private static GameEventBus createShared() {
+        GameEventBus bus = new GameEventBus(Integer.getInteger("minestake.events.queue", 4096));
+        bus.subscribe(new GameLogEventSink());
+        return bus;
+    }
+
+    public static GameEventBus shared() {
+        return SHARED;
+    }
+
+    public void subscribe(GameEventSink sink) {
+        this.sinks.add(sink);
+    }
+
+    public MetricsEventSink getMetrics() {
+        return this.metrics;
+    }
+
+    // Publish LOG_WRITTEN whenever the writer gets a batch onto disk
+    public void watch(GameLogWriter logWriter) {
+        logWriter.setBatchListener(entries -> tryPublish(GameEvent.logWritten(entries)));
+    }
+
+    // Game threads - the event joins the session's console queue and the ring for the shared sinks; never waits
+    // for a sink, only spins (then parks) while the ring is full
+    public void publish(GameEvent event) {
+        event.getSource().enqueue(event);
+        int spins = 0;
+        while (!this.queue.offer(event)) {
+            LockSupport.unpark(this.thread);
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(50_000L);
+            }
+        }
+        wakeConsumer();
+    }
+
+    // For threads the sinks may themselves wait on (the log writer): drops the event when the ring is full
+    public boolean tryPublish(GameEvent event) {
+        if (!this.queue.offer(event)) {
+            return false;
+        }
+        wakeConsumer();
+        return true;
+    }
+
+    private void wakeConsumer() {
+        if (this.idle) {
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            GameEvent event;
+            while ((event = this.queue.poll()) != null) {
+                dispatch(event);
+            }
+            this.idle = true;
+            if (this.queue.isEmpty()) {
+                LockSupport.parkNanos(this, 10_000_000L);
+            }
+            this.idle = false;
+        }
+    }
+
+    // A failing sink is reported and skipped so the others still see the event
+    private void dispatch(GameEvent event) {
+        for (GameEventSink sink : this.sinks) {
+            try {
+                sink.onEvent(event);
+            } catch (RuntimeException e) {
+                System.out.println("Event sink " + sink.getClass().getSimpleName() + " failed: " + e.getMessage());
+            }
+        }
+        if (event.getSource() != null) {
+            event.getSource().markDispatched();
+        }
+    }
+}
+
+// LATENCY HISTOGRAM - HDR-style log-linear buckets: exact below 32 ns, then 16 buckets per power of two
+// (within 6.25%). Recording is a few atomic adds and allocates nothing; readers see a consistent-enough view.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.counts.incrementAndGet(indexOf(nanos));
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(nanos);
+        long max = this.maxNanos.get();
+        while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public double getMeanNanos() {
+        long n = this.count.get();
+        return n == 0 ? 0.0 : this.totalNanos.get() / (double) n;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    // Upper edge of the bucket holding the given quantile, capped at the largest value seen
+    public long getPercentileNanos(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += this.counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return i + 1 == BUCKETS ? getMaxNanos() : Math.min(lowestValueAt(i + 1) - 1, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    // Values below 32 get a bucket each; above that, the top five significant bits pick the bucket
+    static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < 2 * SUB_BUCKET_HALF) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        return (long) (index - shift * SUB_BUCKET_HALF) << shift;
+    }
+
+    public String summary() {
+        return String.format("%-26s count %10d  mean %9.1f us  p50 %9.1f us  p99 %9.1f us  p99.9 %9.1f us  max %9.1f us",
+                this.name, getCount(), getMeanNanos() / 1e3, getPercentileNanos(0.50) / 1e3,
+                getPercentileNanos(0.99) / 1e3, getPercentileNanos(0.999) / 1e3, getMaxNanos() / 1e3);
+    }
+}
+
+// GAME METRICS - Always-on latency histograms and counters for placement, reveals, logging and history reads
+// Exposed as the JMX MBean minestake:type=GameMetrics and optionally dumped to a file on a timer
+class GameMetrics {
+    private static volatile boolean enabled = true;
+
+    private static final LatencyHistogram[] PLACEMENT = new LatencyHistogram[PlacementAlgorithm.values().length];
+    private static final LongAdder[] FALLBACKS = new LongAdder[PlacementAlgorithm.values().length];
+    public static final LatencyHistogram REVEAL = new LatencyHistogram("reveal");
+    public static final LatencyHistogram LOG_BATCH_WRITE = new LatencyHistogram("log.batchWrite");
+    public static final LatencyHistogram HISTORY_READ = new LatencyHistogram("history.read");
+    public static final LongAdder LOG_ENTRIES_WRITTEN = new LongAdder();
+
+    static {
+        for (PlacementAlgorithm algorithm : PlacementAlgorithm.values()) {
+            PLACEMENT[algorithm.ordinal()] = new LatencyHistogram("placement." + algorithm.name());
+            FALLBACKS[algorithm.ordinal()] = new LongAdder();
+        }
+        registerMBean();
+        scheduleDumps();
+    }
+
+    // Turned off only by the overhead benchmark
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // Start of a timed section; 0 when metrics are off
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void recordSince(LatencyHistogram histogram, long start) {
+        if (start != 0L) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void recordPlacement(PlacementAlgorithm requested, PlacementAlgorithm used, long start) {
+        if (start != 0L) {
+            PLACEMENT[requested.ordinal()].record(System.nanoTime() - start);
+            if (used != requested) {
+                FALLBACKS[requested.ordinal()].increment();
+            }
+        }
+    }
+
+    public static LatencyHistogram placement(PlacementAlgorithm algorithm) {
+        return PLACEMENT[algorithm.ordinal()];
+    }
+
+    public static long fallbacks(PlacementAlgorithm algorithm) {
+        return FALLBACKS[algorithm.ordinal()].sum();
+    }
+
+    public static List<LatencyHistogram> histograms() {
+        List<LatencyHistogram> all = new ArrayList<>(Arrays.asList(PLACEMENT));
+        all.add(REVEAL);
+        all.add(LOG_BATCH_WRITE);
+        all.add(HISTORY_READ);
+        return all;
+    }
+
+    public static String snapshot() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : histograms()) {
+            text.append(histogram.summary()).append('\n');
+        }
+        for (PlacementAlgorithm algorithm : PlacementAlgorithm.values()) {
+            text.append("placement.").append(algorithm.name()).append(".fallbacks ")
+                    .append(fallbacks(algorithm)).append('\n');
+        }
+        text.append("log.entriesWritten ").append(LOG_ENTRIES_WRITTEN.sum()).append('\n');
+        return text.toString();
+    }
+
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new GameMetricsMBean(),
+                    new ObjectName("minestake:type=GameMetrics"));
+        } catch (JMException e) {
+            System.out.println("Game metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    // -Dminestake.metrics.dumpSeconds=<n> appends a snapshot every n seconds to -Dminestake.metrics.dumpFile
+    private static void scheduleDumps() {
+        long seconds = Long.getLong("minestake.metrics.dumpSeconds", 0L);
+        if (seconds <= 0) {
+            return;
+        }
+        Path file = Paths.get(System.getProperty("minestake.metrics.dumpFile", "minestake_metrics.log"));
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            String dump = "=== " + new Date() + " ===\n" + snapshot();
+            try {
+                Files.write(file, dump.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.out.println("Error writing metrics dump: " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+}
+
+// GAME METRICS MBEAN - Read-only JMX view of GameMetrics, one attribute per statistic
+// A DynamicMBean, since a standard MBean interface would have to be public
+class GameMetricsMBean implements DynamicMBean {
+    private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+
+    public GameMetricsMBean() {
+        for (LatencyHistogram histogram : GameMetrics.histograms()) {
+            String prefix = histogram.getName() + ".";
+            this.attributes.put(prefix + "count", histogram::getCount);
+            this.attributes.put(prefix + "meanNanos", histogram::getMeanNanos);
+            this.attributes.put(prefix + "p50Nanos", () -> histogram.getPercentileNanos(0.50));
+            this.attributes.put(prefix + "p99Nanos", () -> histogram.getPercentileNanos(0.99));
+            this.attributes.put(prefix + "p999Nanos", () -> histogram.getPercentileNanos(0.999));
+            this.attributes.put(prefix + "maxNanos", histogram::getMaxNanos);
+        }
+        for (PlacementAlgorithm algorithm : PlacementAlgorithm.values()) {
+            this.attributes.put("placement." + algorithm.name() + ".fallbacks", () -> GameMetrics.fallbacks(algorithm));
+        }
+        this.attributes.put("log.entriesWritten", GameMetrics.LOG_ENTRIES_WRITTEN::sum);
+        this.attributes.put("boardPool.misses", () -> BoardPool.shared().getMisses());
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        Supplier<Object> attribute = this.attributes.get(name);
+        if (attribute == null) {
+            throw new AttributeNotFoundException(name);
+        }
+        return attribute.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> attribute = this.attributes.get(name);
+            if (attribute != null) {
+                list.add(new Attribute(name, attribute.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        if (action.equals("snapshot")) {
+            return GameMetrics.snapshot();
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (Map.Entry<String, Supplier<Object>> entry : this.attributes.entrySet()) {
+            String type = entry.getValue().get() instanceof Double ? "double" : "long";
+            infos.add(new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false));
+        }
+        MBeanOperationInfo snapshot = new MBeanOperationInfo("snapshot", "All metrics as text",
+                new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO);
+        return new MBeanInfo(getClass().getName(), "MineStake game metrics",
+                infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {snapshot}, null);
+    }
+}
+
+// STANDING - One player's row on the leaderboard; replaced, never changed, when the player finishes a round
+final class Standing {
+    private final long playerId;
+    private final String name;
+    private final long netPaise;
+    private final long rounds;
+
+    public Standing(long playerId, String name, long netPaise, long rounds) {
+        this.playerId = playerId;
+        this.name = name;
+        this.netPaise = netPaise;
+        this.rounds = rounds;
+    }
+
+    public Standing plus(long deltaPaise) {
+        return new Standing(this.playerId, this.name, this.netPaise + deltaPaise, this.rounds + 1);
+    }
+
+    public long getPlayerId() {
+        return this.playerId;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    // Winnings less stakes over every finished round
+    public long getNetPaise() {
+        return this.netPaise;
+    }
+
+    public long getRounds() {
+        return this.rounds;
+    }
+}
+
+// SCORE TREE - Player counts per distinct score, answering "how many are ahead of this score" exactly
+// A treap keyed by score: each node holds the players at its score and the total of its subtree, and a score
+// nobody has any more is removed, so an update or a count is one root-to-leaf path, O(log n) in distinct scores.
+// Not thread-safe; ScoreRanks keeps one per score bucket and locks it.
+class ScoreTree {
+    private final SplittableRandom priorities = new SplittableRandom(0x5C0E7EEL);
+    private Node root;
+
+    public void add(long score) {
+        this.root = add(this.root, score, 1);
+    }
+
+    public void remove(long score) {
+        this.root = add(this.root, score, -1);
+    }
+
+    public void move(long from, long to) {
+        this.root = add(this.root, to, 1);
+        this.root = add(this.root, from, -1);
+    }
+
+    // Players with a strictly higher score
+    public long countAbove(long score) {
+        long above = 0;
+        Node node = this.root;
+        while (node != null) {
+            if (score < node.score) {
+                above += node.count + total(node.right);
+                node = node.left;
+            } else if (score > node.score) {
+                node = node.right;
+            } else {
+                return above + total(node.right);
+            }
+        }
+        return above;
+    }
+
+    private Node add(Node node, long score, long delta) {
+        if (node == null) {
+            return new Node(score, this.priorities.nextInt(), delta);
+        }
+        if (score < node.score) {
+            node.left = add(node.left, score, delta);
+            if (node.left != null && node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else if (score > node.score) {
+            node.right = add(node.right, score, delta);
+            if (node.right != null && node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        } else {
+            node.count += delta;
+            if (node.count == 0) {
+                return merge(node.left, node.right);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    // Joins two treaps where every score in left is below every score in right
+    private static Node merge(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.total = node.count + total(node.left) + total(node.right);
+    }
+
+    private static long total(Node node) {
+        return node == null ? 0 : node.total;
+    }
+
+    private static class Node {
+        private final long score;
+        private final int priority;
+        private long count;
+        private long total;
+        private Node left;
+        private Node right;
+
+        Node(long score, int priority, long count) {
+            this.score = score;
+            this.priority = priority;
+            this.count = count;
+            this.total = count;
+        }
+    }
+}
+
+// SCORE RANKS - How many players are above a score, exactly, without one lock that every writer takes
+// Scores fall into log-linear buckets (one per paisa below Rs.2.56, then 128 per power of two, mirrored for
+// losses). A Fenwick tree of atomic counters gives the players in the buckets above a score in O(log buckets)
+// without a lock, and the bucket's own ScoreTree, under that tree's lock, counts the players above the score
+// inside the bucket in O(log n). Writers only wait for each other when their scores share a bucket. A count
+// taken while players move may be off by those players for that moment; once updates stop, every count is exact.
+class ScoreRanks {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int SIDE_BUCKETS = (64 - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+    private static final int BUCKETS = 2 * SIDE_BUCKETS;
+
+    private final AtomicLongArray bucketTree = new AtomicLongArray(BUCKETS + 1);
+    private final AtomicReferenceArray<ScoreTree> trees = new AtomicReferenceArray<>(BUCKETS);
+
+    public void add(long score) {
+        int bucket = bucketOf(score);
+        ScoreTree tree = tree(bucket);
+        synchronized (tree) {
+            tree.add(score);
+        }
+        addToBucket(bucket, 1);
+    }
+
+    // Within a bucket the move is one step under its lock; across buckets the new score is added first
+    public void move(long from, long to) {
+        int fromBucket = bucketOf(from);
+        ScoreTree tree = tree(fromBucket);
+        if (fromBucket == bucketOf(to)) {
+            synchronized (tree) {
+                tree.move(from, to);
+            }
+            return;
+        }
+        add(to);
+        synchronized (tree) {
+            tree.remove(from);
+        }
+        addToBucket(fromBucket, -1);
+    }
+
+    // Players with a strictly higher score
+    public long countAbove(long score) {
+        int bucket = bucketOf(score);
+        long above = countBelow(BUCKETS) - countBelow(bucket + 1);
+        ScoreTree tree = this.trees.get(bucket);
+        if (tree != null) {
+            synchronized (tree) {
+                above += tree.countAbove(score);
+            }
+        }
+        return above;
+    }
+
+    // Only while nothing else uses the ranks
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.trees.set(i, null);
+            this.bucketTree.set(i + 1, 0);
+        }
+    }
+
+    // Buckets in increasing score order: losses mirrored below the middle, winnings above it
+    static int bucketOf(long score) {
+        return score >= 0 ? SIDE_BUCKETS + indexOf(score) : SIDE_BUCKETS - 1 - indexOf(-(score + 1));
+    }
+
+    // Values below 256 get a bucket each; above that, the top eight significant bits pick the bucket
+    private static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    private ScoreTree tree(int bucket) {
+        ScoreTree tree = this.trees.get(bucket);
+        if (tree == null) {
+            this.trees.compareAndSet(bucket, null, new ScoreTree());
+            tree = this.trees.get(bucket);
+        }
+        return tree;
+    }
+
+    private void addToBucket(int bucket, long delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            this.bucketTree.addAndGet(i, delta);
+        }
+    }
+
+    // Players in the buckets below this one
+    private long countBelow(int bucket) {
+        long count = 0;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            count += this.bucketTree.get(i);
+        }
+        return count;
+    }
+}
+
+// LEADERBOARD - Live ranking of every player by net winnings, shared by all sessions in the process
+// Standings sit in a concurrent skip list, best first, so an update is O(log n) and a top-K read walks the head
+// of the list without blocking writers. Ranks come from ScoreRanks, exact and O(log n). A player's standing only
+// changes on its own session thread, so replacing it is an insert and a remove without a lock. Every row is a
+// distinct key (the round count breaks ties). A replaced row is retired under the current walk epoch and stays
+// in the list until every top() walk that was already running has finished, so a walk always meets one of the
+// player's rows, and a retired row waits only for the walks older than it, however many overlap later.
+class Leaderboard {
+    private static final String FILE_MAGIC = "MSL1";
+    private static final Leaderboard SHARED = fromSystemProperties();
+
+    private final ConcurrentSkipListSet<Standing> ranked = new ConcurrentSkipListSet<>((a, b) ->
+            a.getNetPaise() != b.getNetPaise() ? Long.compare(b.getNetPaise(), a.getNetPaise())
+                    : a.getPlayerId() != b.getPlayerId() ? Long.compare(a.getPlayerId(), b.getPlayerId())
+                    : Long.compare(a.getRounds(), b.getRounds()));
+    private final ConcurrentHashMap<Long, Standing> byPlayer = new ConcurrentHashMap<>();
+    private final AtomicLong walkEpoch = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> walks = new ConcurrentSkipListSet<>();
+    private final ConcurrentLinkedQueue<Retired> retired = new ConcurrentLinkedQueue<>();
+    private final ScoreRanks scores = new ScoreRanks();
+    private final AtomicLong nextPlayerId = new AtomicLong(1);
+    private final AtomicLong version = new AtomicLong();
+    private final Path file;
+    private long savedVersion;
+
+    // file is where standings are saved and loaded from; null keeps them in memory only
+    public Leaderboard(Path file) {
+        this.file = file;
+    }
+
+    // -Dminestake.leaderboard.file=<file> keeps standings across runs: loaded now, saved every
+    // -Dminestake.leaderboard.saveSeconds (default 30, 0 for never) and once more when the process exits
+    private static Leaderboard fromSystemProperties() {
+        String path = System.getProperty("minestake.leaderboard.file", "");
+        Leaderboard leaderboard = new Leaderboard(path.isEmpty() ? null : Paths.get(path));
+        if (leaderboard.file == null) {
+            return leaderboard;
+        }
+        leaderboard.load();
+        long saveSeconds = Long.getLong("minestake.leaderboard.saveSeconds", 30L);
+        if (saveSeconds > 0) {
+            ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "leaderboard-saver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            saver.scheduleWithFixedDelay(leaderboard::save, saveSeconds, saveSeconds, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(leaderboard::save, "leaderboard-save"));
+        return leaderboard;
+    }
+
+    public static Leaderboard shared() {
+        return SHARED;
+    }
+
+    // Ids carry on from the loaded standings, so a new player never takes over an old row
+    public long newPlayerId() {
+        return this.nextPlayerId.getAndIncrement();
+    }
+
+    // A finished round: winnings less the stake, i.e. minus the bet for a mine hit
+    public void record(long playerId, String name, long deltaPaise) {
+        Standing old = this.byPlayer.get(playerId);
+        Standing next = old == null ? new Standing(playerId, name, deltaPaise, 1) : old.plus(deltaPaise);
+        // Inserted before the old row goes, so the player always has a row in the list
+        this.ranked.add(next);
+        if (old == null) {
+            this.scores.add(next.getNetPaise());
+        } else if (deltaPaise != 0) {
+            this.scores.move(old.getNetPaise(), next.getNetPaise());
+        }
+        this.byPlayer.put(playerId, next);
+        if (old != null) {
+            retire(old);
+        }
+        this.version.incrementAndGet();
+    }
+
+    // A walk that started before the new row went in may already be past it, so it needs the old row to find
+    // the player; a walk whose ticket is above the epoch read here started after the new row went in
+    private void retire(Standing old) {
+        this.retired.add(new Retired(old, this.walkEpoch.get()));
+        removeRetired();
+    }
+
+    // Rows retired before the oldest running walk began; their replacements were in the list by then
+    private void removeRetired() {
+        Retired head;
+        while ((head = this.retired.peek()) != null && head.epoch < oldestWalk()) {
+            if (this.retired.remove(head)) {
+                this.ranked.remove(head.row);
+            }
+        }
+    }
+
+    // Ticket of the oldest top() walk still running, or above every epoch when none is
+    private long oldestWalk() {
+        Long oldest = this.walks.ceiling(Long.MIN_VALUE);
+        return oldest == null ? Long.MAX_VALUE : oldest;
+    }
+
+    public Standing getStanding(long playerId) {
+        return this.byPlayer.get(playerId);
+    }
+
+    public int size() {
+        return this.byPlayer.size();
+    }
+
+    // 1 plus the number of players with strictly higher net winnings; 0 for a player with no finished round
+    public long rankOf(long playerId) {
+        Standing standing = this.byPlayer.get(playerId);
+        if (standing == null) {
+            return 0;
+        }
+        return this.scores.countAbove(standing.getNetPaise()) + 1;
+    }
+
+    // The best count players, read from the head of the list while updates go on. A row is taken as found when it
+    // is still the player's standing. A row that is not (a retired row, or one replaced while the walk runs) is
+    // passed over, and once the walk ends that player's current standing is placed by score unless the walk took
+    // it on the way, so a player is listed once, and not missed when the new row went in behind the walk
+    public List<Standing> top(int count) {
+        Comparator<? super Standing> order = this.ranked.comparator();
+        List<Standing> top = new ArrayList<>(count);
+        Set<Long> taken = new HashSet<>();
+        List<Long> moved = new ArrayList<>();
+        long ticket = this.walkEpoch.incrementAndGet();
+        this.walks.add(ticket);
+        try {
+            for (Standing standing : this.ranked) {
+                if (top.size() == count) {
+                    break;
+                }
+                Standing current = this.byPlayer.get(standing.getPlayerId());
+                // null: a first round, listed just before the player's row is published
+                if (current != null && current != standing) {
+                    moved.add(standing.getPlayerId());
+                } else if (taken.add(standing.getPlayerId())) {
+                    top.add(standing);
+                }
+            }
+        } finally {
+            this.walks.remove(ticket);
+            removeRetired();
+        }
+        for (long playerId : moved) {
+            if (!taken.add(playerId)) {
+                continue;
+            }
+            Standing current = this.byPlayer.get(playerId);
+            int at = -Collections.binarySearch(top, current, order) - 1;
+            if (at < count) {
+                top.add(at, current);
+                if (top.size() > count) {
+                    top.remove(count);
+                }
+            }
+        }
+        return top;
+    }
+
+    // Written to a temporary file and moved into place, so an interrupted save leaves the previous file
+    public synchronized void save() {
+        long current = this.version.get();
+        if (this.file == null || current == this.savedVersion) {
+            return;
+        }
+        Path temporary = Paths.get(this.file + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(FILE_MAGIC + " " + this.nextPlayerId.get() + "\n");
+            for (Standing standing : this.byPlayer.values()) {
+                writer.write(standing.getPlayerId() + " " + standing.getNetPaise() + " " + standing.getRounds()
+                        + " " + standing.getName() + "\n");
+            }
+        } catch (IOException e) {
+            System.out.println("Leaderboard not saved: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.savedVersion = current;
+        } catch (IOException e) {
+            System.out.println("Leaderboard not saved: " + e.getMessage());
+        }
+    }
+
+    // Lines of "id net rounds name" after a "MSL1 <next id>" header; a damaged file starts an empty board
+    private void load() {
+        if (!Files.exists(this.file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split(" ");
+            if (!header[0].equals(FILE_MAGIC)) {
+                throw new IOException("not a leaderboard file");
+            }
+            long nextId = Long.parseLong(header[1]);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 4);
+                Standing standing = new Standing(Long.parseLong(fields[0]), fields[3], Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]));
+                this.byPlayer.put(standing.getPlayerId(), standing);
+                this.ranked.add(standing);
+                this.scores.add(standing.getNetPaise());
+                nextId = Math.max(nextId, standing.getPlayerId() + 1);
+            }
+            this.nextPlayerId.set(nextId);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Leaderboard not loaded from " + this.file + ": " + e.getMessage());
+            this.byPlayer.clear();
+            this.ranked.clear();
+            this.retired.clear();
+            this.scores.clear();
+        }
+    }
+
+    // A replaced row and the walk epoch when it was replaced
+    private static class Retired {
+        private final Standing row;
+        private final long epoch;
+
+        Retired(Standing row, long epoch) {
+            this.row = row;
+            this.epoch = epoch;
+        }
+    }
+}
+
+// LEADERBOARD BENCHMARK - Concurrent updates against top-K and rank reads, then an exact check of every rank
+class LeaderboardBenchmark {
+    // Usage: leaderboard-bench [writer threads] [players] [millis]
+    public static void run(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 300_000;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 5_000L;
+
+        Leaderboard leaderboard = new Leaderboard(null);
+        long[] ids = new long[players];
+        for (int i = 0; i < players; i++) {
+            ids[i] = leaderboard.newPlayerId();
+            leaderboard.record(ids[i], "Bench", 0);
+        }
+
+        // Each writer owns every threads-th player, as a session owns its player; one reader queries meanwhile
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder updates = new LongAdder();
+        LatencyHistogram updateLatency = new LatencyHistogram("update");
+        LatencyHistogram topLatency = new LatencyHistogram("top10");
+        LatencyHistogram rankLatency = new LatencyHistogram("rank");
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            workers.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(first);
+                for (int i = first; running.get(); i = i + threads < players ? i + threads : first) {
+                    // A Rs.10 bet: lost, or paid at up to 5x
+                    long delta = random.nextInt(3) == 0 ? -1000 : random.nextInt(4000) - 1000;
+                    long start = System.nanoTime();
+                    leaderboard.record(ids[i], "Bench", delta);
+                    updateLatency.record(System.nanoTime() - start);
+                    updates.increment();
+                }
+            }, "leaderboard-writer-" + t));
+        }
+        Thread reader = new Thread(() -> {
+            SplittableRandom random = new SplittableRandom(-1);
+            while (running.get()) {
+                long start = System.nanoTime();
+                leaderboard.top(10);
+                topLatency.record(System.nanoTime() - start);
+                start = System.nanoTime();
+                leaderboard.rankOf(ids[random.nextInt(players)]);
+                rankLatency.record(System.nanoTime() - start);
+            }
+        }, "leaderboard-reader");
+
+        workers.forEach(Thread::start);
+        reader.start();
+        try {
+            Thread.sleep(millis);
+            running.set(false);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        System.out.println(String.format("%d players, %d writer threads: %.0f updates/sec", players, threads,
+                updates.sum() * 1000.0 / millis));
+        for (LatencyHistogram histogram : new LatencyHistogram[] {updateLatency, topLatency, rankLatency}) {
+            System.out.println(String.format("%-7s %10d calls  mean %8.2f us  p99 %8.2f us  max %9.2f us",
+                    histogram.getName(), histogram.getCount(), histogram.getMeanNanos() / 1e3,
+                    histogram.getPercentileNanos(0.99) / 1e3, histogram.getMaxNanos() / 1e3));
+        }
+        verify(leaderboard, ids);
+    }
+
+    // With the writers stopped, every rank must equal 1 + the players strictly ahead in a plain sort
+    private static void verify(Leaderboard leaderboard, long[] ids) {
+        long[] nets = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            nets[i] = leaderboard.getStanding(ids[i]).getNetPaise();
+        }
+        long[] sorted = nets.clone();
+        Arrays.sort(sorted);
+        int wrong = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int notAhead = upperBound(sorted, nets[i]);
+            if (leaderboard.rankOf(ids[i]) != ids.length - notAhead + 1) {
+                wrong++;
+            }
+        }
+        List<Standing> top = leaderboard.top(1);
+        System.out.println("Check: " + leaderboard.size() + " standings, " + wrong + " wrong ranks, leader "
+                + (top.isEmpty() ? "none" : "Rs." + PayoutTable.formatHundredths(top.get(0).getNetPaise())
+                + " (max Rs." + PayoutTable.formatHundredths(sorted[sorted.length - 1]) + ")"));
+    }
+
+    // Index of the first value above key
+    private static int upperBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
+
+// ABSTRACT BASE CLASS - AbstractGame (INHERITANCE)
+abstract class AbstractGame {
+    protected Player player;
+    protected SessionIO io;
+
+    public AbstractGame(Player player) {
+        this(player, new ConsoleSessionIO());
+    }
+
+    public AbstractGame(Player player, SessionIO io) {
+        this.player = player;
+        this.io = io;
+    }
+
+    // Abstract method to be overridden
+    public abstract void playRound() throws InvalidBetException, InsufficientBalanceException;
+
+    // Concrete method
+    public void displayBalance() {
+        io.println("Current Balance: Rs." + this.player.getBalance());
+    }
+
+    // Reads one trimmed line of player input; ends the session when the input is closed
+    protected String readInput() {
+        String line = this.io.readLine();
+        if (line == null) {
+            throw new SessionClosedException("Player input closed");
+        }
+        return line.trim();
+    }
+}
+
+// ROUND RULES - What a round accepts and how its stake moves, for MineStakeGame's prompts and BatchGame's scripts
+// Both only read and report input their own way; bet checks, size and mine limits, pick checks and settling are here
+class RoundRules {
+    // -Dminestake.largeBoards=true asks for the board size separately and plays on sparse boards
+    public static final boolean LARGE_BOARDS = Boolean.getBoolean("minestake.largeBoards");
+    public static final int MIN_BOARD_SIZE = 2;
+    public static final int MAX_BOARD_SIZE = Math.min(SparseBoard.MAX_SIZE,
+            Integer.getInteger("minestake.largeBoards.maxSize", 1000));
+    public static final int MAX_PICKS_PER_LINE = 1000;
+
+    // Takes the stake off the balance in one step, or says why it can't - EXCEPTION HANDLING
+    public static void reserveBet(Player player, long betPaise)
+            throws InvalidBetException, InsufficientBalanceException {
+        if (betPaise <= 0) {
+            throw new InvalidBetException("Bet amount must be greater than zero!");
+        }
+        if (!player.reserveStake(betPaise)) {
+            throw new InsufficientBalanceException("Insufficient balance! You only have Rs." + player.getBalance());
+        }
+    }
+
+    // A round left before its board is dealt gives the stake back
+    public static void returnBet(Player player, long betPaise) {
+        player.creditPaise(betPaise);
+    }
+
+    public static boolean isBoardSize(long size) {
+        return size >= MIN_BOARD_SIZE && size <= MAX_BOARD_SIZE;
+    }
+
+    public static int minMines() {
+        return LARGE_BOARDS ? 1 : BoardPool.MIN_MINES;
+    }
+
+    // Large boards keep at least one safe tile and fit a sparse board; the chosen size only matters for them
+    public static int maxMines(int chosenSize) {
+        return LARGE_BOARDS ? (int) Math.min(SparseBoard.MAX_MINES, (long) chosenSize * chosenSize - 1)
+                : BoardPool.MAX_MINES;
+    }
+
+    public static boolean isMineCount(long mines, int chosenSize) {
+        return mines >= minMines() && mines <= maxMines(chosenSize);
+    }
+
+    // Board size = number of mines (3 mines = 3×3, 4 mines = 4×4, etc.) unless it was chosen on its own
+    public static int boardSize(int chosenSize, int mines) {
+        return LARGE_BOARDS ? chosenSize : mines;
+    }
+
+    public static GameBoard deal(BoardSource boards, int boardSize, int mines) {
+        return LARGE_BOARDS ? boards.takeLarge(boardSize, mines) : boards.take(mines);
+    }
+
+    // Cell of a 1-based "row col" pick, or -1 when it is off the board
+    public static int cellAt(int boardSize, long row, long col) {
+        if (row < 1 || row > boardSize || col < 1 || col > boardSize) {
+            return -1;
+        }
+        return (int) (row - 1) * boardSize + (int) (col - 1);
+    }
+
+    // No picked tile is revealed already or picked twice
+    public static boolean arePicksHidden(GameBoard board, int[] cells, int count) {
+        int size = board.getSize();
+        for (int i = 0; i < count; i++) {
+            if (board.isTileRevealed(cells[i] / size, cells[i] % size)) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (cells[j] == cells[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Pays the stake at the multiplier, rounded down to the paisa, into the balance; returns the winnings
+    public static long cashOut(Player player, long betPaise, long multiplier) {
+        long winnings = PayoutTable.payout(betPaise, multiplier);
+        player.creditPaise(winnings);
+        return winnings;
+    }
+
+    // A session goes on while there is balance left to stake
+    public static boolean canPlayAgain(Player player) {
+        return player.getBalancePaise() > 0;
+    }
+}
+
+// MINESTAKE GAME CLASS - POLYMORPHISM (method overriding)
+class MineStakeGame extends AbstractGame implements Playable {
+    // -Dminestake.loadingAnimation=true brings back the old "Placing mines..." animation
+    private static final boolean LOADING_ANIMATION = Boolean.getBoolean("minestake.loadingAnimation");
+
+    private GameBoard board;
+    private double currentBet;
+    private long currentBetPaise;
+    private int numberOfMines;
+    private long multiplier;
+    private PayoutProgress payout;
+    // Tiles picked on the last input line and the optional auto cash-out multiplier (0 for none)
+    private int[] pickCells = new int[8];
+    private int pickCount;
+    private long pickTarget;
+    private GameLogWriter logWriter;
+    private boolean ownsLogWriter;
+    private GameEventSource events;
+    private BoardSource boards;
+    private SessionRecorder recorder;
+    private SessionJournal journal;
+    private SessionWal wal;
+    private Leaderboard leaderboard;
+    private long standingId;
+
+    // Constructor
+    public MineStakeGame(Player player) {
+        super(player);
+        this.logWriter = GameLogWriter.fromSystemProperties("game_log.txt");
+        this.ownsLogWriter = true;
+        GameEventBus.shared().watch(this.logWriter);
+        this.boards = BoardPool.shared();
+        this.connectWal();
+        this.connectJournal();
+        this.joinLeaderboard();
+        this.connectEvents();
+        this.multiplier = PayoutTable.ONE;
+    }
+
+    // Session constructor - many games share one log writer, which outlives each of them
+    public MineStakeGame(Player player, SessionIO io, GameLogWriter sharedLogWriter) {
+        super(player, io);
+        this.logWriter = sharedLogWriter;
+        this.ownsLogWriter = false;
+        this.boards = BoardPool.shared();
+        this.connectJournal();
+        this.joinLeaderboard();
+        this.connectEvents();
+        this.multiplier = PayoutTable.ONE;
+    }
+
+    // Replay constructor - boards come from recorded seeds, rounds go to the recorder instead of a log
+    public MineStakeGame(Player player, SessionIO io, BoardSource boards, SessionRecorder recorder) {
+        super(player, io);
+        this.logWriter = null;
+        this.ownsLogWriter = false;
+        this.boards = boards;
+        this.recorder = recorder;
+        this.connectEvents();
+        this.multiplier = PayoutTable.ONE;
+    }
+
+    // With -Dminestake.wal set, a session the last run did not finish goes on with its balance
+    private void connectWal() {
+        this.wal = SessionWal.fromSystemProperties();
+        if (this.wal != null && this.wal.getRecovered().isResumable()) {
+            this.player.setBalancePaise(this.wal.getRecovered().getBalancePaise());
+        }
+    }
+
+    // Console and server sessions are ranked; replayed ones are not
+    private void joinLeaderboard() {
+        this.leaderboard = Leaderboard.shared();
+        this.standingId = this.leaderboard.newPlayerId();
+    }
+
+    // With -Dminestake.journal set, inputs and round seeds are recorded for replay-journal
+    private void connectJournal() {
+        this.journal = SessionJournal.shared();
+        if (this.journal != null) {
+            this.recorder = new SessionRecorder(this.player.getBalancePaise());
+            this.io = new RecordingSessionIO(this.io, this.recorder);
+            this.boards = new RecordingBoardSource(this.boards, this.recorder);
+        }
+    }
+
+    // Round events are rendered and logged by the bus; the game's own output waits for them
+    private void connectEvents() {
+        this.events = new GameEventSource(this.io, this.logWriter, BoardRenderer.fromSystemProperties());
+        this.io = new OrderedSessionIO(this.io, this.events);
+    }
+
+    // Implementing interface method
+    @Override
+    public void startGame() {
+        io.println("\n" + "=".repeat(50));
+        io.println("         WELCOME TO MINESTAKE GAME");
+        io.println("=".repeat(50));
+
+        boolean playAgain = true;
+        boolean resume = recoverSession();
+
+        try {
+            // The whole balance may be staked on the round being resumed
+            while (playAgain && (resume || RoundRules.canPlayAgain(player))) {
+                try {
+                    if (resume) {
+                        resume = false;
+                        resumeRound();
+                    } else {
+                        playRound();
+                    }
+                } catch (InvalidBetException | InsufficientBalanceException e) {
+                    io.println("Error: " + e.getMessage());
+                    continue;
+                }
+
+                if (!RoundRules.canPlayAgain(player)) {
+                    io.println("\nGame Over! You're out of balance.");
+                    break;
+                }
+
+                io.print("\nDo you want to play again? (y/n): ");
+                String choice = readInput().toLowerCase();
+                playAgain = choice.equals("y");
+            }
+        } catch (SessionClosedException e) {
+            io.println("\n" + e.getMessage() + ", ending game.");
+        }
+
+        endGame();
+
+        if (recorder != null) {
+            recorder.finish(player.getBalancePaise());
+            if (journal != null) {
+                journal.write(recorder);
+            }
+        }
+    }
+
+    // Overriding abstract method - POLYMORPHISM
+    @Override
+    public void playRound() throws InvalidBetException, InsufficientBalanceException {
+        io.println("\n" + "-".repeat(50));
+        displayBalance();
+
+        // Get the bet and reserve it from the balance in one step
+        currentBet = getBetAmount();
+        currentBetPaise = Player.toPaise(currentBet);
+        RoundRules.reserveBet(player, currentBetPaise);
+        if (wal != null) {
+            wal.bet(currentBetPaise, player.getBalancePaise());
+        }
+
+        // Get the board size and number of mines, returning the stake if the player leaves here
+        int boardSize;
+        try {
+            int chosenSize = RoundRules.LARGE_BOARDS ? getBoardSize() : 0;
+            numberOfMines = getMineCount(chosenSize);
+            boardSize = RoundRules.boardSize(chosenSize, numberOfMines);
+        } catch (SessionClosedException e) {
+            RoundRules.returnBet(player, currentBetPaise);
+            if (wal != null) {
+                wal.settle(player.getBalancePaise());
+            }
+            throw e;
+        }
+
+        // Take a board with mines already placed; the loading animation is only for show
+        if (LOADING_ANIMATION) {
+            LoadingThread loadingThread = new LoadingThread("Placing mines", io);
+            loadingThread.start();
+
+            try {
+                loadingThread.join(); // Wait for loading to complete
+            } catch (InterruptedException e) {
+                io.println("Loading was interrupted");
+            }
+        }
+
+        board = RoundRules.deal(boards, boardSize, numberOfMines);
+        if (wal != null) {
+            wal.round(boardSize, numberOfMines, RoundRules.LARGE_BOARDS, board.getRoundSeed());
+        }
+        GameEventBus.shared().publish(GameEvent.roundStarted(events, board, currentBetPaise));
+
+        // Reset multiplier and safe tiles
+        multiplier = PayoutTable.ONE;
+        payout = PayoutTable.shared().progress(board.getSize(), board.getMineCount());
+
+        playTiles();
+    }
+
+    // Game loop - tile picks until the player cashes out or hits a mine
+    private void playTiles() {
+        boolean gameActive = true;
+        boolean hitMine = false;
+
+        while (gameActive) {
+            // Earlier events of the round are shown first and use the same renderer
+            events.flush();
+            events.getRenderer().render(board, io);
+
+            getTileSelection();
+            if (!RoundRules.arePicksHidden(board, pickCells, pickCount)) {
+                io.println(pickCount == 1 ? "WARNING: This tile is already revealed. Try another one."
+                        : "WARNING: A tile is already revealed or picked twice. Try again.");
+                continue;
+            }
+
+            // One pass over every picked tile, up to the first mine or the target multiplier
+            long revealStart = GameMetrics.start();
+            RevealResult result = RevealResult.reveal(board, pickCells, pickCount, payout, pickTarget);
+            if (wal != null) {
+                wal.reveal(pickCells, result.getRevealed());
+            }
+
+            if (!result.isMineHit()) {
+                multiplier = result.getMultiplier();
+                GameEventBus.shared().publish(GameEvent.tileRevealed(events, result.getSafeTiles(), multiplier,
+                        currentBetPaise, winningsPaise()));
+                GameMetrics.recordSince(GameMetrics.REVEAL, revealStart);
+
+                boolean cashOut = result.isCashOut();
+                if (!cashOut) {
+                    io.print("\nCash out? (y/n): ");
+                    cashOut = readInput().toLowerCase().equals("y");
+                }
+
+                if (cashOut) {
+                    cashOutRound();
+                    gameActive = false;
+                }
+            } else {
+                if (wal != null) {
+                    wal.settle(player.getBalancePaise());
+                }
+                GameEventBus.shared().publish(GameEvent.mineHit(events, board, currentBetPaise, player.getBalancePaise()));
+                GameMetrics.recordSince(GameMetrics.REVEAL, revealStart);
+                recordRound(false, 0);
+                hitMine = true;
+                gameActive = false;
+            }
+        }
+
+        if (!hitMine && gameActive) {
+            io.println("\nRound ended.");
+        }
+
+        finishRound();
+    }
+
+    private void cashOutRound() {
+        long winnings = RoundRules.cashOut(player, currentBetPaise, multiplier);
+        if (wal != null) {
+            wal.settle(player.getBalancePaise());
+        }
+        GameEventBus.shared().publish(
+                GameEvent.cashedOut(events, board, currentBetPaise, winnings, player.getBalancePaise()));
+        recordRound(true, winnings);
+    }
+
+    private void finishRound() {
+        // Events still waiting to be shown refer to this board
+        events.flush();
+        if (board instanceof Board) {
+            boards.recycle((Board) board);
+        }
+        board = null;
+    }
+
+    // Starts the write-ahead journal; true when the last run stopped in the middle of a round
+    private boolean recoverSession() {
+        if (wal == null) {
+            return false;
+        }
+        WalState recovered = wal.getRecovered();
+        boolean resumed = recovered.isResumable();
+        boolean dealt = resumed && recovered.isDealt();
+        wal.start(player.getBalancePaise());
+        if (resumed) {
+            io.println("\nRecovered your unfinished session.");
+        }
+        if (resumed && recovered.hasRound() && !dealt) {
+            // Stopped before the board was dealt: the stake goes back
+            long stake = recovered.getBetPaise();
+            RoundRules.returnBet(player, stake);
+            wal.settle(player.getBalancePaise());
+            io.println("The bet of Rs." + String.format("%.2f", stake / 100.0) + " on the interrupted round was returned.");
+        }
+        return dealt;
+    }
+
+    // Rebuilds the interrupted round from its seed and the tiles already turned over, then plays on
+    private void resumeRound() {
+        WalState recovered = wal.getRecovered();
+        currentBetPaise = recovered.getBetPaise();
+        currentBet = currentBetPaise / 100.0;
+        numberOfMines = recovered.getMines();
+        board = recovered.isLarge() ? SparseBoard.replay(recovered.getSize(), numberOfMines, recovered.getSeed())
+                : Board.replay(numberOfMines, recovered.getSeed());
+        io.println("\n" + "-".repeat(50));
+        io.println("Resuming the interrupted round: bet Rs." + String.format("%.2f", currentBet) + ", "
+                + numberOfMines + " mines, " + recovered.getCellCount() + " tiles revealed");
+        GameEventBus.shared().publish(GameEvent.roundStarted(events, board, currentBetPaise));
+
+        payout = PayoutTable.shared().progress(board.getSize(), board.getMineCount());
+        RevealResult replayed = RevealResult.reveal(board, recovered.getCells(), recovered.getCellCount(), payout, 0);
+        multiplier = replayed.getMultiplier();
+        if (replayed.isMineHit()) {
+            // The mine was turned over just before the stop, so the stake is already lost
+            wal.settle(player.getBalancePaise());
+            GameEventBus.shared().publish(GameEvent.mineHit(events, board, currentBetPaise, player.getBalancePaise()));
+            recordRound(false, 0);
+            finishRound();
+            return;
+        }
+        if (payout.getSafeTiles() > 0) {
+            events.flush();
+            events.getRenderer().render(board, io);
+            io.println("Multiplier: " + PayoutTable.formatMultiplier(multiplier) + "x");
+            io.println("Potential Winnings: Rs." + PayoutTable.formatHundredths(winningsPaise()));
+            io.print("\nCash out? (y/n): ");
+            if (readInput().toLowerCase().equals("y")) {
+                cashOutRound();
+                finishRound();
+                return;
+            }
+        }
+        playTiles();
+    }
+
+    // Journal copy of the round's log entry, and the session's move on the leaderboard
+    private void recordRound(boolean won, long winningsPaise) {
+        if (recorder != null) {
+            recorder.recordRound(won, currentBetPaise, winningsPaise, player.getBalancePaise(), board.getRoundSeed());
+        }
+        if (leaderboard != null) {
+            leaderboard.record(standingId, player.getName(), winningsPaise - currentBetPaise);
+        }
+    }
+
+    // Helper method to get bet amount
+    private double getBetAmount() {
+        while (true) {
+            try {
+                io.print("Enter bet amount: Rs.");
+                String input = readInput();
+                double bet = Double.parseDouble(input);
+                return bet;
+            } catch (NumberFormatException e) {
+                io.println("Invalid input. Please enter a valid number.");
+            }
+        }
+    }
+
+    // Payout for the current multiplier, rounded down to the paisa
+    private long winningsPaise() {
+        return PayoutTable.payout(currentBetPaise, multiplier);
+    }
+
+    // Helper method to get mine count; chosenSize is the large-board size, 0 otherwise
+    private int getMineCount(int chosenSize) {
+        int minMines = RoundRules.minMines();
+        int maxMines = RoundRules.maxMines(chosenSize);
+        while (true) {
+            try {
+                io.print("Enter number of mines (" + minMines + "-" + maxMines + "): ");
+                String input = readInput();
+                int mines = Integer.parseInt(input);
+                if (RoundRules.isMineCount(mines, chosenSize)) {
+                    return mines;
+                } else {
+                    io.println("Please enter a number between " + minMines + " and " + maxMines + ".");
+                }
+            } catch (NumberFormatException e) {
+                io.println("Invalid input. Please enter a valid number.");
+            }
+        }
+    }
+
+    // Large-board mode - the board size is chosen on its own
+    private int getBoardSize() {
+        while (true) {
+            try {
+                io.print("Enter board size (" + RoundRules.MIN_BOARD_SIZE + "-" + RoundRules.MAX_BOARD_SIZE + "): ");
+                int size = Integer.parseInt(readInput());
+                if (RoundRules.isBoardSize(size)) {
+                    return size;
+                }
+                io.println("Please enter a number between " + RoundRules.MIN_BOARD_SIZE + " and "
+                        + RoundRules.MAX_BOARD_SIZE + ".");
+            } catch (NumberFormatException e) {
+                io.println("Invalid input. Please enter a valid number.");
+            }
+        }
+    }
+
+    // Helper method to get the tiles to reveal: "row col", or several "row col" pairs separated by commas,
+    // optionally followed by "@ <multiplier>" to cash out as soon as that multiplier is reached
+    private void getTileSelection() {
+        int maxSize = board.getSize();
+        while (true) {
+            io.print("Enter row and column (1-" + maxSize + "): ");
+            String error = parseTileSelection(readInput(), maxSize);
+            if (error == null) {
+                return;
+            }
+            io.println(error);
+        }
+    }
+
+    // Fills pickCells, pickCount and pickTarget; returns the message to show when the input is not valid
+    private String parseTileSelection(String input, int maxSize) {
+        pickTarget = 0;
+        int at = input.indexOf('@');
+        if (at >= 0) {
+            try {
+                pickTarget = new BigDecimal(input.substring(at + 1).trim()).movePointRight(4)
+                        .setScale(0, java.math.RoundingMode.CEILING).longValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                return "Invalid target multiplier. Use e.g. @1.5";
+            }
+            if (pickTarget <= 0) {
+                return "The target multiplier must be above zero.";
+            }
+            input = input.substring(0, at);
+        }
+
+        String[] pairs = input.split(",");
+        if (pairs.length > RoundRules.MAX_PICKS_PER_LINE) {
+            return "Please pick at most " + RoundRules.MAX_PICKS_PER_LINE + " tiles at once.";
+        }
+        pickCount = 0;
+        for (String pair : pairs) {
+            String[] parts = pair.trim().split(" ");
+            if (parts.length != 2) {
+                return "Please enter two numbers separated by space.";
+            }
+            int row;
+            int col;
+            try {
+                row = Integer.parseInt(parts[0]);
+                col = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                return "Invalid input. Please enter valid numbers.";
+            }
+            int cell = RoundRules.cellAt(maxSize, row, col);
+            if (cell < 0) {
+                return "Please enter numbers between 1 and " + maxSize + ".";
+            }
+            if (pickCount == pickCells.length) {
+                pickCells = Arrays.copyOf(pickCells, pickCount * 2);
+            }
+            pickCells[pickCount++] = cell;
+        }
+        return null;
+    }
+
+    // Implementing interface method
+    @Override
+    public void endGame() {
+        io.println("\n" + "=".repeat(50));
+        io.println("              GAME SUMMARY");
+        io.println("=".repeat(50));
+        io.println("Final Balance: Rs." + String.format("%.2f", player.getBalance()));
+        if (wal != null) {
+            wal.end();
+            try {
+                wal.close();
+            } catch (IOException e) {
+                io.println("Error closing session journal: " + e.getMessage());
+            }
+        }
+        // Wait for the bus to hand the last rounds to the writer, then drain it before reading the history back
+        events.awaitDispatched();
+        if (ownsLogWriter) {
+            logWriter.close();
+        } else if (logWriter != null) {
+            logWriter.drain();
+        }
+        if (logWriter != null) {
+            io.println("\nLast 5 Game Records:");
+            displayLastGames(5);
+        }
+        if (leaderboard != null) {
+            displayLeaderboard(3);
+        }
+        io.println("\n" + "=".repeat(50));
+        io.println("      Thanks for playing MineStake!");
+        io.println("=".repeat(50));
+    }
+
+    // The leaders and this session's place among every ranked session
+    private void displayLeaderboard(int count) {
+        io.println("\nLeaderboard (net winnings):");
+        List<Standing> top = leaderboard.top(count);
+        for (int i = 0; i < top.size(); i++) {
+            Standing standing = top.get(i);
+            io.println((i + 1) + ". " + standing.getName() + " #" + standing.getPlayerId() + "  Rs."
+                    + PayoutTable.formatHundredths(standing.getNetPaise()) + " over " + standing.getRounds()
+                    + " rounds");
+        }
+        Standing own = leaderboard.getStanding(standingId);
+        if (own != null) {
+            io.println("You: #" + leaderboard.rankOf(standingId) + " of " + leaderboard.size() + " with Rs."
+                    + PayoutTable.formatHundredths(own.getNetPaise()));
+        }
+    }
+
+    // FILE HANDLING - Read the last records from the end of the log
+    private void displayLastGames(int count) {
+        File file = new File("game_log.txt");
+        long start = GameMetrics.start();
+        try {
+            // -Dminestake.log.format=binary writes no text log, so the history comes from the binary records
+            if (!logWriter.writesText() && logWriter.getBinaryLog() != null) {
+                List<LogEntry> entries = BinaryGameLog.last(logWriter.getBinaryLog().getDirectory(), count);
+                GameMetrics.recordSince(GameMetrics.HISTORY_READ, start);
+                if (entries.isEmpty()) {
+                    io.println("No game history found.");
+                }
+                TextLogCodec codec = new TextLogCodec();
+                for (int i = 0; i < entries.size(); i++) {
+                    io.println((i + 1) + ". " + codec.format(entries.get(i)));
+                }
+                return;
+            }
+            // Just after a seal the active file may not exist yet; its history is then all in segments
+            List<String> lines = Collections.emptyList();
+            if (file.exists()) {
+                try (GameHistoryReader reader = new GameHistoryReader(file.getPath())) {
+                    lines = reader.lastLines(count);
+                }
+            }
+            if (lines.size() < count) {
+                lines = olderLines(file.toPath(), count - lines.size(), lines);
+            }
+            GameMetrics.recordSince(GameMetrics.HISTORY_READ, start);
+            if (lines.isEmpty()) {
+                io.println("No game history found.");
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                io.println((i + 1) + ". " + lines.get(i));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            io.println("Error reading log file: " + e.getMessage());
+        }
+    }
+
+    // The active log was sealed recently: take the rest from the newest segments, never opening older ones
+    private static List<String> olderLines(Path active, int needed, List<String> newer) throws IOException {
+        List<LogSegment> segments = LogSegment.list(LogSegmentStore.directoryFor(active),
+                LogSegmentStore.prefixOf(active));
+        List<String> lines = new ArrayList<>(newer);
+        for (int i = segments.size() - 1; i >= 0 && needed > 0; i--) {
+            List<String> segmentLines = segments.get(i).readLines();
+            int from = Math.max(0, segmentLines.size() - needed);
+            lines.addAll(0, segmentLines.subList(from, segmentLines.size()));
+            needed -= segmentLines.size() - from;
+        }
+        return lines;
+    }
+}
+
+// ROUND STRATEGY - Decides which tile to pick next and when to cash out in headless rounds
+interface RoundStrategy {
+    String getName();
+
+    boolean shouldCashOut(int safeTilesRevealed, double multiplier);
+
+    // Every hidden tile is equally likely to be a mine, so the default pick is uniform
+    default int chooseCell(Board board, RandomGenerator random) {
+        return board.selectHiddenCell(random.nextInt(board.countHiddenTiles()));
+    }
+}
+
+// STRATEGY 1 - Cash out after a fixed number of safe tiles
+class FixedRevealsStrategy implements RoundStrategy {
+    private final int reveals;
+
+    public FixedRevealsStrategy(int reveals) {
+        this.reveals = reveals;
+    }
+
+    @Override
+    public String getName() {
+        return "fixed-" + this.reveals;
+    }
+
+    @Override
+    public boolean shouldCashOut(int safeTilesRevealed, double multiplier) {
+        return safeTilesRevealed >= this.reveals;
+    }
+}
+
+// STRATEGY 2 - Cash out once the multiplier reaches a target
+class TargetMultiplierStrategy implements RoundStrategy {
+    private final double target;
+
+    public TargetMultiplierStrategy(double target) {
+        this.target = target;
+    }
+
+    @Override
+    public String getName() {
+        return "target-" + this.target + "x";
+    }
+
+    @Override
+    public boolean shouldCashOut(int safeTilesRevealed, double multiplier) {
+        return multiplier >= this.target;
+    }
+}
+
+// SIMULATION STATISTICS - Mergeable per-worker totals for one (mines, algorithm, strategy) configuration
+class SimulationStats {
+    private long rounds;
+    private long busts;
+    private long fallbacks;
+    private long minesPlaced;
+    private double sumReturn;
+    private double sumSquaredReturn;
+
+    // Return is the payout as a multiple of the bet (0 on a bust)
+    public void recordRound(double returnMultiple, int mines, boolean fellBack) {
+        this.rounds++;
+        this.minesPlaced += mines;
+        if (returnMultiple == 0.0) {
+            this.busts++;
+        }
+        if (fellBack) {
+            this.fallbacks++;
+        }
+        this.sumReturn += returnMultiple;
+        this.sumSquaredReturn += returnMultiple * returnMultiple;
+    }
+
+    public SimulationStats merge(SimulationStats other) {
+        this.rounds += other.rounds;
+        this.busts += other.busts;
+        this.fallbacks += other.fallbacks;
+        this.minesPlaced += other.minesPlaced;
+        this.sumReturn += other.sumReturn;
+        this.sumSquaredReturn += other.sumSquaredReturn;
+        return this;
+    }
+
+    public long getRounds() {
+        return this.rounds;
+    }
+
+    public double getRtp() {
+        return this.rounds == 0 ? 0.0 : this.sumReturn / this.rounds;
+    }
+
+    public double getVariance() {
+        if (this.rounds == 0) {
+            return 0.0;
+        }
+        double mean = getRtp();
+        return this.sumSquaredReturn / this.rounds - mean * mean;
+    }
+
+    public double getBustRate() {
+        return this.rounds == 0 ? 0.0 : (double) this.busts / this.rounds;
+    }
+
+    public double getFallbackRate() {
+        return this.rounds == 0 ? 0.0 : (double) this.fallbacks / this.rounds;
+    }
+
+    public double getAverageMines() {
+        return this.rounds == 0 ? 0.0 : (double) this.minesPlaced / this.rounds;
+    }
+}
+
+// SIMULATION TASK - Fork/join splitting of a round budget, each leaf with its own RNG stream
+class SimulationTask extends RecursiveTask<SimulationStats> {
+    private static final long serialVersionUID = 1L;
+    private static final long LEAF_ROUNDS = 1 << 15;
+
+    private final int mines;
+    private final PlacementAlgorithm algorithm;
+    private final RoundStrategy strategy;
+    private final long rounds;
+    private final SplittableRandom random;
+
+    public SimulationTask(int mines, PlacementAlgorithm algorithm, RoundStrategy strategy, long rounds,
+                          SplittableRandom random) {
+        this.mines = mines;
+        this.algorithm = algorithm;
+        this.strategy = strategy;
+        this.rounds = rounds;
+        this.random = random;
+    }
+
+    @Override
+    protected SimulationStats compute() {
+        if (this.rounds <= LEAF_ROUNDS) {
+            return runRounds();
+        }
+        long half = this.rounds / 2;
+        SimulationTask left = new SimulationTask(mines, algorithm, strategy, half, random.split());
+        left.fork();
+        SimulationTask right = new SimulationTask(mines, algorithm, strategy, rounds - half, random);
+        SimulationStats stats = right.compute();
+        return stats.merge(left.join());
+    }
+
+    // Same board size rule as the console game: an N-mine round is played on an NxN board
+    private SimulationStats runRounds() {
+        SimulationStats stats = new SimulationStats();
+        Board board = new Board(mines, mines);
+        long[] payoutRow = PayoutTable.shared().row(mines, mines);
+
+        for (long i = 0; i < rounds; i++) {
+            board.reset();
+            boolean fellBack = board.placeMines(algorithm, random) != algorithm;
+
+            int safeTilesRevealed = 0;
+            double multiplier = 1.0;
+            boolean bust = false;
+
+            while (board.countRemainingSafeTiles() > 0) {
+                if (!board.revealCell(strategy.chooseCell(board, random))) {
+                    bust = true;
+                    break;
+                }
+                safeTilesRevealed++;
+                multiplier = PayoutTable.toDouble(payoutRow[safeTilesRevealed]);
+                if (strategy.shouldCashOut(safeTilesRevealed, multiplier)) {
+                    break;
+                }
+            }
+
+            stats.recordRound(bust ? 0.0 : multiplier, board.countMines(), fellBack);
+        }
+        return stats;
+    }
+}
+
+// ROUND SIMULATOR - Headless RTP estimation across mine counts, algorithms and strategies
+class RoundSimulator {
+    public static void run(String[] args) {
+        long rounds = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        int minMines = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int maxMines = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : RngService.shared().getMasterSeed();
+
+        RoundStrategy[] strategies = {
+            new FixedRevealsStrategy(1),
+            new FixedRevealsStrategy(3),
+            new FixedRevealsStrategy(5),
+            new TargetMultiplierStrategy(2.0)
+        };
+
+        SplittableRandom master = new SplittableRandom(seed);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        System.out.println("Simulating " + rounds + " rounds per configuration on "
+                + pool.getParallelism() + " workers (seed " + seed + ")");
+        PayoutTable payouts = PayoutTable.shared();
+        System.out.println(payouts.isLinear() ? "Payouts: linear +0.25x per safe tile"
+                : "Payouts: fair odds less a " + PayoutTable.formatHundredths(payouts.getHouseEdgeBasisPoints()) + "% house edge");
+        System.out.println(String.format("%-5s %-12s %-12s %10s %8s %9s %7s %7s %9s",
+                "Mines", "Algorithm", "Strategy", "Rounds", "RTP %", "Variance", "Bust %", "Placed", "Fallbk %"));
+
+        long totalRounds = 0;
+        long start = System.nanoTime();
+
+        for (int mines = minMines; mines <= maxMines; mines++) {
+            for (PlacementAlgorithm algorithm : PlacementAlgorithm.values()) {
+                for (RoundStrategy strategy : strategies) {
+                    SimulationStats stats = pool.invoke(
+                            new SimulationTask(mines, algorithm, strategy, rounds, master.split()));
+                    totalRounds += stats.getRounds();
+                    System.out.println(String.format("%-5d %-12s %-12s %10d %8.3f %9.4f %7.2f %7.2f %9.2f",
+                            mines, algorithm, strategy.getName(), stats.getRounds(),
+                            stats.getRtp() * 100, stats.getVariance(), stats.getBustRate() * 100,
+                            stats.getAverageMines(), stats.getFallbackRate() * 100));
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%nTotal: %d rounds in %.2fs (%.0f rounds/sec)",
+                totalRounds, seconds, totalRounds / seconds));
+    }
+}
+
+// BENCHMARK RESULT - One measured (algorithm, mines) configuration
+class BenchmarkResult {
+    private final PlacementAlgorithm algorithm;
+    private final int mines;
+    private final double opsPerSecond;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final double bytesPerOp;
+
+    public BenchmarkResult(PlacementAlgorithm algorithm, int mines, double opsPerSecond,
+                           long p50Nanos, long p99Nanos, long p999Nanos, double bytesPerOp) {
+        this.algorithm = algorithm;
+        this.mines = mines;
+        this.opsPerSecond = opsPerSecond;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.bytesPerOp = bytesPerOp;
+    }
+
+    public String getKey() {
+        return this.algorithm + ":" + this.mines;
+    }
+
+    public double getOpsPerSecond() {
+        return this.opsPerSecond;
+    }
+
+    public double getBytesPerOp() {
+        return this.bytesPerOp;
+    }
+
+    // Baseline file format: key opsPerSecond p99Nanos bytesPerOp
+    public String toBaselineLine() {
+        return getKey() + " " + this.opsPerSecond + " " + this.p99Nanos + " " + this.bytesPerOp;
+    }
+
+    public String toReportLine() {
+        return String.format("%-12s %5d %14.0f %10d %10d %10d %10.1f",
+                this.algorithm, this.mines, this.opsPerSecond, this.p50Nanos, this.p99Nanos,
+                this.p999Nanos, this.bytesPerOp);
+    }
+}
+
+// PLACEMENT BENCHMARK - Throughput, tail latency and allocation rate of each mine placement algorithm
+class PlacementBenchmark {
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final long warmupNanos;
+    private final long measureNanos;
+    private final long[] samples = new long[MAX_SAMPLES];
+    private long sink; // consumed results so the JIT cannot drop the placement work
+
+    public PlacementBenchmark(long warmupMillis, long measureMillis) {
+        this.warmupNanos = warmupMillis * 1_000_000L;
+        this.measureNanos = measureMillis * 1_000_000L;
+    }
+
+    // Usage: bench [--mines 2-12] [--time millis] [--save file] [--baseline file] [--tolerance percent]
+    public static void run(String[] args) {
+        int minMines = 2;
+        int maxMines = 12;
+        long millis = 1000;
+        String savePath = null;
+        String baselinePath = null;
+        double tolerance = 10.0;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mines":
+                    String[] range = args[i + 1].split("-");
+                    minMines = Integer.parseInt(range[0]);
+                    maxMines = Integer.parseInt(range[range.length - 1]);
+                    break;
+                case "--time":
+                    millis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--save":
+                    savePath = args[i + 1];
+                    break;
+                case "--baseline":
+                    baselinePath = args[i + 1];
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        PlacementBenchmark benchmark = new PlacementBenchmark(millis / 2, millis);
+        List<BenchmarkResult> results = new ArrayList<>();
+
+        System.out.println(String.format("%-12s %5s %14s %10s %10s %10s %10s",
+                "Algorithm", "Mines", "ops/sec", "p50 ns", "p99 ns", "p99.9 ns", "bytes/op"));
+        for (PlacementAlgorithm algorithm : PlacementAlgorithm.values()) {
+            for (int mines = minMines; mines <= maxMines; mines++) {
+                BenchmarkResult result = benchmark.measure(algorithm, mines);
+                results.add(result);
+                System.out.println(result.toReportLine());
+            }
+        }
+
+        try {
+            if (savePath != null) {
+                saveBaseline(savePath, results);
+                System.out.println("\nBaseline saved to " + savePath);
+            }
+            if (baselinePath != null && !checkAgainstBaseline(baselinePath, results, tolerance)) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.out.println("Error accessing baseline file: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    public BenchmarkResult measure(PlacementAlgorithm algorithm, int mines) {
+        Board board = new Board(mines, mines);
+        SplittableRandom random = new SplittableRandom(mines * 31L + algorithm.ordinal());
+
+        // Warmup, then a batch-timed throughput phase with allocation accounting
+        runFor(board, algorithm, random, this.warmupNanos);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = runFor(board, algorithm, random, this.measureNanos);
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        // Separate per-operation timing phase for the latency distribution
+        int count = 0;
+        long deadline = System.nanoTime() + this.measureNanos;
+        while (count < MAX_SAMPLES && System.nanoTime() < deadline) {
+            long opStart = System.nanoTime();
+            board.reset();
+            board.placeMines(algorithm, random);
+            this.samples[count++] = System.nanoTime() - opStart;
+            this.sink += board.countMines();
+        }
+        Arrays.sort(this.samples, 0, count);
+
+        double bytesPerOp = allocatedBefore < 0 ? -1 : (double) (allocatedAfter - allocatedBefore) / ops;
+        return new BenchmarkResult(algorithm, mines, ops * 1e9 / elapsed,
+                percentile(count, 0.50), percentile(count, 0.99), percentile(count, 0.999), bytesPerOp);
+    }
+
+    // Runs whole batches until the time budget is spent and returns the operation count
+    private long runFor(Board board, PlacementAlgorithm algorithm, RandomGenerator random, long nanos) {
+        long ops = 0;
+        long deadline = System.nanoTime() + nanos;
+        do {
+            for (int i = 0; i < 64; i++) {
+                board.reset();
+                board.placeMines(algorithm, random);
+                this.sink += board.countMines();
+            }
+            ops += 64;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    private long percentile(int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return this.samples[Math.min(count - 1, (int) (count * fraction))];
+    }
+
+    // Bytes allocated by this thread so far, or -1 when the JVM does not expose it
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void saveBaseline(String path, List<BenchmarkResult> results) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))) {
+            for (BenchmarkResult result : results) {
+                writer.write(result.toBaselineLine());
+                writer.newLine();
+            }
+        }
+    }
+
+    // Regression gate - fails when throughput drops or allocation grows beyond the tolerance
+    private static boolean checkAgainstBaseline(String path, List<BenchmarkResult> results, double tolerance)
+            throws IOException {
+        Map<String, String[]> baseline = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 4) {
+                    baseline.put(parts[0], parts);
+                }
+            }
+        }
+
+        boolean passed = true;
+        System.out.println("\nComparing against baseline " + path + " (tolerance " + tolerance + "%)");
+        for (BenchmarkResult result : results) {
+            String[] base = baseline.get(result.getKey());
+            if (base == null) {
+                continue;
+            }
+            double baseOps = Double.parseDouble(base[1]);
+            double baseBytes = Double.parseDouble(base[3]);
+            double change = (result.getOpsPerSecond() - baseOps) / baseOps * 100;
+
+            if (change < -tolerance) {
+                System.out.println(String.format("REGRESSION %s: %.0f ops/sec vs baseline %.0f (%.1f%%)",
+                        result.getKey(), result.getOpsPerSecond(), baseOps, change));
+                passed = false;
+            }
+            if (baseBytes >= 0 && result.getBytesPerOp() > baseBytes * (1 + tolerance / 100) + 8) {
+                System.out.println(String.format("REGRESSION %s: %.1f bytes/op vs baseline %.1f",
+                        result.getKey(), result.getBytesPerOp(), baseBytes));
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "No regressions found." : "Benchmark regression gate FAILED.");
+        return passed;
+    }
+}
+
+// BOARD REPLAY - Regenerates a logged round's layout from its seed and shows every mine
+class BoardReplay {
+    // Usage: replay-board <seed> <mines> [size] - the size is only given for large-board rounds
+    public static void run(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java MineStake replay-board <seed> <mines> [size]");
+            return;
+        }
+        long seed = RngService.parseSeed(args[0]);
+        int mines = Integer.parseInt(args[1]);
+        if (args.length > 2) {
+            listMines(SparseBoard.replay(Integer.parseInt(args[2]), mines, seed));
+            return;
+        }
+
+        Board board = Board.replay(mines, seed);
+        SessionIO out = new ConsoleSessionIO();
+        out.println("Round seed " + RngService.formatSeed(seed) + " on a " + mines + "x" + mines + " board:");
+        board.describePlacement(out);
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            board.revealCell(cell);
+        }
+        board.displayBoard(out);
+    }
+
+    // A large board is listed by mine position rather than drawn
+    private static void listMines(SparseBoard board) {
+        System.out.println("Round seed " + RngService.formatSeed(board.getRoundSeed()) + " on a " + board.getSize()
+                + "x" + board.getSize() + " board, " + board.getMineCount() + " mines (row col):");
+        StringBuilder line = new StringBuilder();
+        int[] cells = board.getMineCells();
+        for (int i = 0; i < cells.length; i++) {
+            line.append(String.format("%6d %-6d", cells[i] / board.getSize() + 1, cells[i] % board.getSize() + 1));
+            if (i % 8 == 7 || i == cells.length - 1) {
+                System.out.println(line.toString().stripTrailing());
+                line.setLength(0);
+            }
+        }
+    }
+}
+
+// SESSION RECORDER - Everything needed to play a session again: its inputs, round seeds and outcomes
+// Inputs and seeds are added on the game thread; the journal is written once the session has ended
+class SessionRecorder {
+    private final long openingBalancePaise;
+    private final List<String> inputs = new ArrayList<>();
+    private long[] seeds = new long[8];
+    private int seedCount;
+    private final List<LogEntry> rounds = new ArrayList<>();
+    private long finalBalancePaise;
+
+    public SessionRecorder(long openingBalancePaise) {
+        this.openingBalancePaise = openingBalancePaise;
+    }
+
+    public void recordInput(String line) {
+        this.inputs.add(line);
+    }
+
+    public void recordSeed(long seed) {
+        if (this.seedCount == this.seeds.length) {
+            this.seeds = Arrays.copyOf(this.seeds, this.seedCount * 2);
+        }
+        this.seeds[this.seedCount++] = seed;
+    }
+
+    // Same fields as the game log entry, without the wall-clock time
+    public void recordRound(boolean won, long betPaise, long winningsPaise, long balancePaise, long seed) {
+        this.rounds.add(new LogEntry(0L, won, betPaise, winningsPaise, balancePaise, seed));
+    }
+
+    public void finish(long finalBalancePaise) {
+        this.finalBalancePaise = finalBalancePaise;
+    }
+
+    public long getOpeningBalancePaise() {
+        return this.openingBalancePaise;
+    }
+
+    public List<String> getInputs() {
+        return this.inputs;
+    }
+
+    public long[] getSeeds() {
+        return Arrays.copyOf(this.seeds, this.seedCount);
+    }
+
+    public List<LogEntry> getRounds() {
+        return this.rounds;
+    }
+
+    public long getFinalBalancePaise() {
+        return this.finalBalancePaise;
+    }
+
+    // Empty when both sessions played out the same way, otherwise the first difference
+    public String differenceFrom(SessionRecorder expected) {
+        if (this.rounds.size() != expected.rounds.size()) {
+            return "played " + this.rounds.size() + " rounds, expected " + expected.rounds.size();
+        }
+        for (int i = 0; i < this.rounds.size(); i++) {
+            LogEntry actual = this.rounds.get(i);
+            LogEntry wanted = expected.rounds.get(i);
+            if (actual.isWon() != wanted.isWon() || actual.getBetPaise() != wanted.getBetPaise()
+                    || actual.getWinningsPaise() != wanted.getWinningsPaise()
+                    || actual.getBalancePaise() != wanted.getBalancePaise()
+                    || actual.getRoundSeed() != wanted.getRoundSeed()) {
+                return "round " + (i + 1) + " differs";
+            }
+        }
+        if (this.finalBalancePaise != expected.finalBalancePaise) {
+            return "final balance " + this.finalBalancePaise + " paise, expected " + expected.finalBalancePaise;
+        }
+        return "";
+    }
+}
+
+// RECORDING SESSION I/O - Passes everything through and keeps a copy of each input line
+class RecordingSessionIO implements SessionIO {
+    private final SessionIO delegate;
+    private final SessionRecorder recorder;
+
+    public RecordingSessionIO(SessionIO delegate, SessionRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String readLine() {
+        String line = this.delegate.readLine();
+        if (line != null) {
+            this.recorder.recordInput(line);
+        }
+        return line;
+    }
+
+    @Override
+    public void print(String text) {
+        this.delegate.print(text);
+    }
+
+    @Override
+    public void println(String text) {
+        this.delegate.println(text);
+    }
+
+    @Override
+    public void println() {
+        this.delegate.println();
+    }
+}
+
+// RECORDING BOARD SOURCE - Notes the seed of every board a session is dealt
+class RecordingBoardSource implements BoardSource {
+    private final BoardSource delegate;
+    private final SessionRecorder recorder;
+
+    public RecordingBoardSource(BoardSource delegate, SessionRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Board take(int mines) {
+        Board board = this.delegate.take(mines);
+        this.recorder.recordSeed(board.getRoundSeed());
+        return board;
+    }
+
+    @Override
+    public GameBoard takeLarge(int size, int mines) {
+        GameBoard board = this.delegate.takeLarge(size, mines);
+        this.recorder.recordSeed(board.getRoundSeed());
+        return board;
+    }
+
+    @Override
+    public void recycle(Board board) {
+        this.delegate.recycle(board);
+    }
+}
+
+// SCRIPTED SESSION I/O - Feeds recorded input lines to a game and discards its output
+class ScriptedSessionIO implements SessionIO {
+    private final List<String> inputs;
+    private int next;
+
+    public ScriptedSessionIO(List<String> inputs) {
+        this.inputs = inputs;
+    }
+
+    @Override
+    public String readLine() {
+        return this.next < this.inputs.size() ? this.inputs.get(this.next++) : null;
+    }
+
+    @Override
+    public void print(String text) {
+    }
+
+    @Override
+    public void println(String text) {
+    }
+
+    @Override
+    public void println() {
+    }
+}
+
+// REPLAY BOARD SOURCE - Deals the recorded sequence of boards again from their seeds
+class ReplayBoardSource implements BoardSource {
+    private final long[] seeds;
+    private int next;
+
+    public ReplayBoardSource(long[] seeds) {
+        this.seeds = seeds;
+    }
+
+    @Override
+    public Board take(int mines) {
+        return Board.replay(mines, nextSeed());
+    }
+
+    @Override
+    public GameBoard takeLarge(int size, int mines) {
+        return SparseBoard.replay(size, mines, nextSeed());
+    }
+
+    private long nextSeed() {
+        if (this.next == this.seeds.length) {
+            throw new IllegalStateException("The journal has no more round seeds");
+        }
+        return this.seeds[this.next++];
+    }
+
+    @Override
+    public void recycle(Board board) {
+    }
+}
+
+// SESSION JOURNAL - Append-only file of finished sessions, one self-contained block each
+// Block: magic, opening balance, input lines, round seeds, rounds (won, bet, winnings, balance, seed), final balance
+class SessionJournal {
+    private static final int BLOCK_MAGIC = 0x4D534A31; // "MSJ1"
+    private static final SessionJournal SHARED = openShared();
+
+    private final Path path;
+    private OutputStream out;
+
+    public SessionJournal(Path path) {
+        this.path = path;
+    }
+
+    // -Dminestake.journal=<file> records every console and server session; null when not set
+    private static SessionJournal openShared() {
+        String file = System.getProperty("minestake.journal");
+        return file == null ? null : new SessionJournal(Paths.get(file));
+    }
+
+    public static SessionJournal shared() {
+        return SHARED;
+    }
+
+    // Sessions end on many threads; each block is encoded first and then appended in one piece
+    public void write(SessionRecorder session) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(256);
+        try (DataOutputStream data = new DataOutputStream(block)) {
+            data.writeInt(BLOCK_MAGIC);
+            data.writeLong(session.getOpeningBalancePaise());
+            data.writeInt(session.getInputs().size());
+            for (String input : session.getInputs()) {
+                data.writeUTF(input);
             }
+            long[] seeds = session.getSeeds();
+            data.writeInt(seeds.length);
+            for (long seed : seeds) {
+                data.writeLong(seed);
+            }
+            data.writeInt(session.getRounds().size());
+            for (LogEntry round : session.getRounds()) {
+                data.writeBoolean(round.isWon());
+                data.writeLong(round.getBetPaise());
+                data.writeLong(round.getWinningsPaise());
+                data.writeLong(round.getBalancePaise());
+                data.writeLong(round.getRoundSeed());
+            }
+            data.writeLong(session.getFinalBalancePaise());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-            System.out.print("\nDo you want to play again? (y/n): ");
-            String choice = scanner.nextLine().trim().toLowerCase();
-            playAgain = choice.equals("y");
+        synchronized (this) {
+            try {
+                if (this.out == null) {
+                    this.out = Files.newOutputStream(this.path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                block.writeTo(this.out);
+                this.out.flush();
+            } catch (IOException e) {
+                System.out.println("Error writing session journal: " + e.getMessage());
+            }
         }
+    }
 
-        endGame();
+    public static List<SessionRecorder> readAll(Path path) throws IOException {
+        List<SessionRecorder> sessions = new ArrayList<>();
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int magic;
+                try {
+                    magic = data.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (magic != BLOCK_MAGIC) {
+                    throw new IOException("Not a session journal block at session " + (sessions.size() + 1));
+                }
+                SessionRecorder session = new SessionRecorder(data.readLong());
+                for (int i = data.readInt(); i > 0; i--) {
+                    session.recordInput(data.readUTF());
+                }
+                for (int i = data.readInt(); i > 0; i--) {
+                    session.recordSeed(data.readLong());
+                }
+                for (int i = data.readInt(); i > 0; i--) {
+                    session.recordRound(data.readBoolean(), data.readLong(), data.readLong(), data.readLong(),
+                            data.readLong());
+                }
+                session.finish(data.readLong());
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+}
+
+// JOURNAL REPLAYER - Plays recorded sessions again in parallel and checks they end the same way
+class JournalReplayer {
+    // Usage: replay-journal <file> [threads]
+    public static void run(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java MineStake replay-journal <file> [threads]");
+            return;
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        List<SessionRecorder> sessions;
+        try {
+            sessions = SessionJournal.readAll(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>(sessions.size());
+        long start = System.nanoTime();
+        for (SessionRecorder session : sessions) {
+            results.add(workers.submit(() -> replay(session)));
+        }
+
+        int mismatches = 0;
+        long rounds = 0;
+        for (int i = 0; i < results.size(); i++) {
+            String difference;
+            try {
+                difference = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                difference = "failed: " + e.getCause();
+            }
+            if (!difference.isEmpty()) {
+                mismatches++;
+                if (mismatches <= 10) {
+                    System.out.println("Session " + (i + 1) + ": " + difference);
+                }
+            }
+            rounds += sessions.get(i).getRounds().size();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        workers.shutdown();
+
+        System.out.println(String.format("Replayed %d sessions (%d rounds) on %d threads in %.2fs (%.0f sessions/sec)",
+                sessions.size(), rounds, threads, seconds, sessions.size() / seconds));
+        System.out.println(mismatches == 0 ? "All sessions matched." : mismatches + " session(s) did not match.");
+    }
+
+    private static String replay(SessionRecorder recorded) {
+        Player player = new Player("Replay", recorded.getOpeningBalancePaise() / 100.0);
+        SessionRecorder replayed = new SessionRecorder(recorded.getOpeningBalancePaise());
+        MineStakeGame game = new MineStakeGame(player, new ScriptedSessionIO(recorded.getInputs()),
+                new ReplayBoardSource(recorded.getSeeds()), replayed);
+        game.startGame();
+        return replayed.differenceFrom(recorded);
+    }
+}
+
+// METRICS BENCHMARK - Full game rounds per second with the metrics layer on and off
+class MetricsBenchmark {
+    private static final int MINES = 5;
+
+    // Usage: metrics-bench [sessions per trial] [rounds per session] [trials]
+    public static void run(String[] args) {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int trials = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // Scripted sessions against known seeds, so every trial plays exactly the same rounds
+        SplittableRandom random = new SplittableRandom(42);
+        List<long[]> seeds = new ArrayList<>();
+        List<List<String>> scripts = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            long[] sessionSeeds = random.longs(rounds).toArray();
+            seeds.add(sessionSeeds);
+            scripts.add(script(sessionSeeds, random));
+        }
+
+        System.out.println("Metrics overhead: " + sessions + " sessions x " + rounds + " rounds per trial, "
+                + MINES + " mines");
+        playAll(seeds, scripts); // warm-up
+        double[] on = new double[trials];
+        double[] off = new double[trials];
+        for (int t = 0; t < trials; t++) {
+            GameMetrics.setEnabled(false);
+            off[t] = sessions * (double) rounds / playAll(seeds, scripts);
+            GameMetrics.setEnabled(true);
+            on[t] = sessions * (double) rounds / playAll(seeds, scripts);
+            System.out.println(String.format("Trial %d: %10.0f rounds/sec with metrics, %10.0f without", t + 1,
+                    on[t], off[t]));
+        }
+        Arrays.sort(on);
+        Arrays.sort(off);
+        double medianOn = on[trials / 2];
+        double medianOff = off[trials / 2];
+        System.out.println(String.format("Median: %.0f vs %.0f rounds/sec, overhead %.2f%%",
+                medianOn, medianOff, (medianOff - medianOn) / medianOff * 100));
+        System.out.print(GameMetrics.snapshot());
+    }
+
+    // Seconds to play every session once
+    private static double playAll(List<long[]> seeds, List<List<String>> scripts) {
+        long start = System.nanoTime();
+        for (int i = 0; i < scripts.size(); i++) {
+            MineStakeGame game = new MineStakeGame(new Player("Bench", 1000.0), new ScriptedSessionIO(scripts.get(i)),
+                    new ReplayBoardSource(seeds.get(i)), null);
+            game.startGame();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    // Bet 10, reveal random tiles and cash out after two diamonds, then play the next round
+    private static List<String> script(long[] seeds, SplittableRandom random) {
+        List<String> inputs = new ArrayList<>();
+        for (int round = 0; round < seeds.length; round++) {
+            Board board = Board.replay(MINES, seeds[round]);
+            inputs.add("10");
+            inputs.add(Integer.toString(MINES));
+            int safeTiles = 0;
+            while (true) {
+                int cell = board.selectHiddenCell(random.nextInt(board.countHiddenTiles()));
+                inputs.add((cell / MINES + 1) + " " + (cell % MINES + 1));
+                if (!board.revealCell(cell)) {
+                    break;
+                }
+                safeTiles++;
+                if (safeTiles == 2) {
+                    inputs.add("y");
+                    break;
+                }
+                inputs.add("n");
+            }
+            inputs.add(round + 1 < seeds.length ? "y" : "n");
+        }
+        return inputs;
+    }
+}
+
+// GAME SERVER - Hosts many MineStake sessions in one process over a local TCP line protocol
+class GameServer {
+    private static final AtomicInteger ACTIVE_SESSIONS = new AtomicInteger();
+    private static final AtomicLong FINISHED_SESSIONS = new AtomicLong();
+
+    // Usage: server [port]
+    public static void run(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        GameLogWriter logWriter = GameLogWriter.fromSystemProperties("game_log.txt");
+        GameEventBus.shared().watch(logWriter);
+        ExecutorService sessions = newSessionExecutor();
+        startStatusReporter();
+
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+            System.out.println("MineStake server listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sessions.execute(() -> runSession(socket, logWriter));
+            }
+        } catch (IOException e) {
+            System.out.println("Server stopped: " + e.getMessage());
+        } finally {
+            sessions.shutdown();
+            logWriter.close();
+        }
+    }
+
+    // One player per connection; all sessions share the log writer
+    private static void runSession(Socket socket, GameLogWriter logWriter) {
+        ACTIVE_SESSIONS.incrementAndGet();
+        try (SocketSessionIO io = new SocketSessionIO(socket)) {
+            MineStakeGame game = new MineStakeGame(new Player(), io, logWriter);
+            game.startGame();
+        } catch (IOException e) {
+            // the client disconnected before the session started
+        } finally {
+            ACTIVE_SESSIONS.decrementAndGet();
+            FINISHED_SESSIONS.incrementAndGet();
+        }
+    }
+
+    // Virtual thread per task on JDKs that have them (21+), otherwise a cached platform thread pool
+    public static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads are not available on this JDK, using platform threads.");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Active sessions, heap per session and event totals every 10 seconds while sessions are running
+    private static void startStatusReporter() {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "server-status");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            int active = ACTIVE_SESSIONS.get();
+            if (active == 0) {
+                return;
+            }
+            Runtime runtime = Runtime.getRuntime();
+            long usedKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+            System.out.println("Sessions active: " + active + ", finished: " + FINISHED_SESSIONS.get()
+                    + ", heap: " + usedKb / 1024 + " MB (" + usedKb / active + " KB per active session)");
+            System.out.println("Totals: " + GameEventBus.shared().getMetrics().summary());
+        }, 10, 10, TimeUnit.SECONDS);
+    }
+}
+
+// LOAD GENERATOR - Scripted clients that play whole sessions against a running server
+class LoadGenerator {
+    // Usage: loadgen [port] [sessions] [concurrency] [rounds per session] [mines] [single|batch]
+    public static void run(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int mines = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        boolean batch = args.length > 5 && args[5].equals("batch");
+
+        ExecutorService clients = GameServer.newSessionExecutor();
+        Semaphore slots = new Semaphore(concurrency);
+        ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        SplittableRandom seeds = RngService.shared().newStream();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            slots.acquireUninterruptibly();
+            SplittableRandom random = seeds.split();
+            clients.execute(() -> {
+                try {
+                    latencies.add(new ScriptedClient(port, rounds, mines, batch, random).play());
+                    completed.incrementAndGet();
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+        slots.acquireUninterruptibly(concurrency);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println(String.format("Sessions: %d completed, %d failed in %.2fs (%.1f sessions/sec)",
+                completed.get(), failed.get(), seconds, completed.get() / seconds));
+        if (all.length > 0) {
+            System.out.println(String.format("Reveals: %d, latency p50 %.1f us, p99 %.1f us, max %.1f us",
+                    all.length, all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3,
+                    all[all.length - 1] / 1e3));
+        }
+    }
+}
+
+// SCRIPTED CLIENT - Answers the server's prompts: fixed bet, random tiles, cash out after two diamonds
+// In batch mode both tiles go in one line with the two-diamond multiplier as the auto cash-out target
+class ScriptedClient {
+    private static final int PICKS = 2;
+
+    private final int port;
+    private final int rounds;
+    private final int mines;
+    private final boolean batch;
+    private final SplittableRandom random;
+
+    public ScriptedClient(int port, int rounds, int mines, boolean batch, SplittableRandom random) {
+        this.port = port;
+        this.rounds = rounds;
+        this.mines = mines;
+        this.batch = batch;
+        this.random = random;
+    }
+
+    // Plays until the server ends the session; returns the reveal latencies in nanoseconds
+    public long[] play() throws IOException {
+        long[] latencies = new long[64];
+        int latencyCount = 0;
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            boolean[] revealed = new boolean[0];
+            int roundsPlayed = 0;
+            int safeTiles = 0;
+            long revealSentAt = 0;
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                boolean prompt = line.startsWith("Enter ") || line.startsWith("Cash out?")
+                        || line.startsWith("Do you want");
+                if (prompt && revealSentAt != 0) {
+                    if (latencyCount == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencyCount * 2);
+                    }
+                    latencies[latencyCount++] = System.nanoTime() - revealSentAt;
+                    revealSentAt = 0;
+                }
+
+                String reply = null;
+                if (line.startsWith("Enter bet amount")) {
+                    reply = "10";
+                    safeTiles = 0;
+                } else if (line.startsWith("Enter number of mines")) {
+                    reply = Integer.toString(this.mines);
+                    revealed = new boolean[this.mines * this.mines];
+                } else if (line.startsWith("Enter row and column")) {
+                    reply = this.batch ? batchPick(revealed) : pick(revealed);
+                    revealSentAt = System.nanoTime();
+                } else if (line.startsWith("Cash out?")) {
+                    safeTiles++;
+                    reply = safeTiles >= PICKS || this.batch ? "y" : "n";
+                } else if (line.startsWith("Do you want to play again?")) {
+                    roundsPlayed++;
+                    reply = roundsPlayed < this.rounds ? "y" : "n";
+                }
+
+                if (reply != null) {
+                    out.write(reply);
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+        }
+        return Arrays.copyOf(latencies, latencyCount);
+    }
+
+    private String pick(boolean[] revealed) {
+        int cell = pickHiddenCell(revealed);
+        revealed[cell] = true;
+        return (cell / this.mines + 1) + " " + (cell % this.mines + 1);
+    }
+
+    // "r c, r c @ 1.2375" - the whole round in one line
+    private String batchPick(boolean[] revealed) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < PICKS; i++) {
+            line.append(i == 0 ? "" : ", ").append(pick(revealed));
+        }
+        long target = PayoutTable.shared().multiplier(this.mines, this.mines, PICKS);
+        return line.append(" @ ").append(BigDecimal.valueOf(target, 4).toPlainString()).toString();
+    }
+
+    private int pickHiddenCell(boolean[] revealed) {
+        int cell = this.random.nextInt(revealed.length);
+        while (revealed[cell]) {
+            cell = cell + 1 == revealed.length ? 0 : cell + 1;
+        }
+        return cell;
+    }
+}
+
+// WAL STATE - The local session as the write-ahead journal sees it: balance, and the round in play if any
+// Kept up to date record by record while writing, and rebuilt the same way on recovery
+final class WalState {
+    private long balancePaise;
+    private boolean ended = true;
+    private long betPaise;      // stake of the round in play, 0 when there is none
+    private int size;           // 0 until the round's board is dealt
+    private int mines;
+    private boolean large;
+    private long seed;
+    private int[] cells = new int[16];
+    private int cellCount;
+
+    public void start(long balancePaise) {
+        this.balancePaise = balancePaise;
+        this.ended = false;
+        this.betPaise = 0;
+        this.size = 0;
+        this.cellCount = 0;
+    }
+
+    public void bet(long betPaise, long balancePaise) {
+        this.betPaise = betPaise;
+        this.balancePaise = balancePaise;
+        this.size = 0;
+        this.cellCount = 0;
+    }
+
+    public void round(int size, int mines, boolean large, long seed) {
+        this.size = size;
+        this.mines = mines;
+        this.large = large;
+        this.seed = seed;
+    }
+
+    public void reveal(int[] cells, int count) {
+        if (this.cellCount + count > this.cells.length) {
+            this.cells = Arrays.copyOf(this.cells, Math.max(this.cells.length * 2, this.cellCount + count));
+        }
+        System.arraycopy(cells, 0, this.cells, this.cellCount, count);
+        this.cellCount += count;
+    }
+
+    // Cash-out, mine hit or returned stake: the round is over and the balance is final
+    public void settle(long balancePaise) {
+        this.balancePaise = balancePaise;
+        this.betPaise = 0;
+        this.size = 0;
+        this.cellCount = 0;
+    }
+
+    public void end() {
+        settle(this.balancePaise);
+        this.ended = true;
+    }
+
+    public void writeSnapshot(ByteBuffer out) {
+        out.put((byte) (this.ended ? 1 : 0));
+        out.putLong(this.balancePaise);
+        out.putLong(this.betPaise);
+        out.putInt(this.size);
+        out.putInt(this.mines);
+        out.put((byte) (this.large ? 1 : 0));
+        out.putLong(this.seed);
+        out.putInt(this.cellCount);
+        for (int i = 0; i < this.cellCount; i++) {
+            out.putInt(this.cells[i]);
+        }
+    }
+
+    public void readSnapshot(ByteBuffer in) {
+        this.ended = in.get() != 0;
+        this.balancePaise = in.getLong();
+        this.betPaise = in.getLong();
+        this.size = in.getInt();
+        this.mines = in.getInt();
+        this.large = in.get() != 0;
+        this.seed = in.getLong();
+        this.cellCount = 0;
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            reveal(new int[] {in.getInt()}, 1);
+        }
+    }
+
+    public int snapshotBytes() {
+        return 38 + 4 * this.cellCount;
+    }
+
+    // A session that was still running when the process stopped
+    public boolean isResumable() {
+        return !this.ended;
+    }
+
+    public boolean hasRound() {
+        return this.betPaise > 0;
+    }
+
+    public long getBalancePaise() {
+        return this.balancePaise;
+    }
+
+    public long getBetPaise() {
+        return this.betPaise;
+    }
+
+    public boolean isDealt() {
+        return this.size > 0;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getMines() {
+        return this.mines;
+    }
+
+    public boolean isLarge() {
+        return this.large;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public int[] getCells() {
+        return this.cells;
+    }
+
+    public int getCellCount() {
+        return this.cellCount;
+    }
+}
+
+// SESSION WAL - Write-ahead journal of the local session's money and round state in a memory-mapped file
+// File: 64-byte header (magic "MSW2", then one long holding the epoch and the half size, so the header flips with a
+// single write; the epoch's low bit is the active half), then two equal halves. Records are appended to the
+// active half as [length:4][type:1][payload][crc32:4]; the CRC also covers the epoch, so records left over from
+// an earlier use of a half never validate. The game thread only copies records into the mapping (page cache,
+// which survives the process dying); a background thread forces them to disk every flushMillis. When a half
+// fills up, the state is written as a snapshot at the start of the other half, forced to disk, and only then is the
+// header flipped to it and forced, so a crash or power cut at any point leaves one complete half to recover from.
+// A snapshot that would take more than half of a half (a large board with many revealed cells) doubles the halves
+// first; the new second half then lies past the old end of the file, so the snapshot goes there and the old active
+// half stays intact until the header flips. If the file cannot grow, the journal turns itself off and says so.
+class SessionWal implements Closeable {
+    private static final int MAGIC = 0x4D535732; // "MSW2"
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_OVERHEAD = 9;
+    private static final byte SNAPSHOT = 1;
+    private static final byte BET = 2;
+    private static final byte ROUND = 3;
+    private static final byte REVEAL = 4;
+    private static final byte SETTLE = 5;
+    private static final byte END = 6;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer map;
+    private int halfBytes;
+    private final int snapshotEvery;
+    private final WalState state = new WalState();
+    private final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    private final byte[] epochBytes = new byte[8];
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private final ScheduledExecutorService flusher;
+    private volatile boolean dirty;
+    private long epoch;
+    private int half;
+    private int position;      // next record offset in the file
+    private int sinceSnapshot; // records appended since the last snapshot
+    private boolean disabled;
+
+    public SessionWal(Path path, int fileBytes, long flushMillis, int snapshotEvery) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.halfBytes = storedHalfBytes(this.channel, (fileBytes - HEADER_BYTES) / 2);
+        this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 2L * this.halfBytes);
+        this.snapshotEvery = snapshotEvery;
+        recover();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-wal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // -Dminestake.wal=<file> turns the journal on; -Dminestake.wal.bytes, -Dminestake.wal.flushMillis,
+    // -Dminestake.wal.snapshotEvery; null when it is off or cannot be opened
+    public static SessionWal fromSystemProperties() {
+        String path = System.getProperty("minestake.wal");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return new SessionWal(Paths.get(path), Integer.getInteger("minestake.wal.bytes", 1 << 20),
+                    Long.getLong("minestake.wal.flushMillis", 50L), Integer.getInteger("minestake.wal.snapshotEvery",
+                            10_000));
+        } catch (IOException e) {
+            System.out.println("Session journal disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // What the last run left behind; only meaningful before start()
+    public WalState getRecovered() {
+        return this.state;
+    }
+
+    // A new session, or the recovered one going on in this process; the journal restarts from a snapshot
+    public void start(long balancePaise) {
+        if (!this.state.isResumable()) {
+            this.state.start(balancePaise);
+        }
+        snapshot();
+    }
+
+    public void bet(long betPaise, long balancePaise) {
+        this.state.bet(betPaise, balancePaise);
+        begin(BET, 16).putLong(betPaise).putLong(balancePaise);
+        commit();
+    }
+
+    public void round(int size, int mines, boolean large, long seed) {
+        this.state.round(size, mines, large, seed);
+        begin(ROUND, 17).putInt(size).putInt(mines).put((byte) (large ? 1 : 0)).putLong(seed);
+        commit();
+    }
+
+    // Only the cells actually turned over; whether they were safe follows from the seed
+    public void reveal(int[] cells, int count) {
+        this.state.reveal(cells, count);
+        ByteBuffer out = begin(REVEAL, 4 + 4 * count).putInt(count);
+        for (int i = 0; i < count; i++) {
+            out.putInt(cells[i]);
+        }
+        commit();
+    }
+
+    // Cash-out, mine hit or returned stake, with the balance that results
+    public void settle(long balancePaise) {
+        this.state.settle(balancePaise);
+        begin(SETTLE, 8).putLong(balancePaise);
+        commit();
+    }
+
+    public void end() {
+        this.state.end();
+        begin(END, 0);
+        commit();
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.flusher.shutdown();
+        flush();
+        this.channel.close();
+    }
+
+    private synchronized void flush() {
+        if (this.dirty) {
+            this.dirty = false;
+            this.map.force();
+        }
+    }
+
+    // Forces every record written so far to disk on the calling thread (the unbatched cost, for wal-bench)
+    public void forceNow() {
+        this.dirty = true;
+        flush();
+    }
+
+    // Starts a record in the scratch buffer; commit() stamps the CRC and copies it into the mapping
+    private ByteBuffer begin(byte type, int payloadBytes) {
+        int length = RECORD_OVERHEAD + payloadBytes;
+        if (this.scratch.capacity() < length) {
+            this.scratch = ByteBuffer.allocate(Math.max(length, this.scratch.capacity() * 2));
+        }
+        this.scratch.clear();
+        this.scratch.putInt(1 + payloadBytes).put(type);
+        return this.scratch;
+    }
+
+    private void commit() {
+        if (this.disabled) {
+            return;
+        }
+        int length = this.scratch.position() + 4;
+        if (this.position + length > halfStart(this.half) + this.halfBytes
+                || ++this.sinceSnapshot >= this.snapshotEvery) {
+            // The state already includes this record, so the snapshot replaces it
+            snapshot();
+            return;
+        }
+        append(length);
+    }
+
+    private void append(int length) {
+        this.crc.reset();
+        this.crc.update(this.epochBytes);
+        this.crc.update(this.scratch.array(), 4, length - RECORD_OVERHEAD + 1);
+        this.scratch.putInt((int) this.crc.getValue());
+        this.map.put(this.position, this.scratch.array(), 0, length);
+        this.position += length;
+        this.dirty = true;
+    }
+
+    // Writes the state into the other half under a new epoch, then flips the header to it
+    private void snapshot() {
+        if (this.disabled) {
+            return;
+        }
+        int bytes = this.state.snapshotBytes();
+        long nextEpoch = this.epoch + 1;
+        if (2L * (RECORD_OVERHEAD + bytes) > this.halfBytes) {
+            if (!grow(RECORD_OVERHEAD + bytes)) {
+                return;
+            }
+            // Always the second half, which now starts past the old end of the file
+            nextEpoch |= 1;
+        }
+        int next = (int) (nextEpoch & 1);
+        this.epoch = nextEpoch;
+        ByteBuffer.wrap(this.epochBytes).putLong(this.epoch);
+        this.position = halfStart(next);
+        this.state.writeSnapshot(begin(SNAPSHOT, bytes));
+        append(RECORD_OVERHEAD + bytes);
+        // The header must never name a half whose snapshot is still only in the page cache
+        this.map.force(halfStart(next), RECORD_OVERHEAD + bytes);
+        this.map.putLong(8, this.epoch << 32 | this.halfBytes);
+        this.map.force(0, HEADER_BYTES);
+        this.half = next;
+        this.sinceSnapshot = 0;
+    }
+
+    // Remaps the file with halves at least twice as large, leaving room for records after a snapshot of length bytes
+    private boolean grow(int length) {
+        long grown = this.halfBytes;
+        while (grown < 2L * length) {
+            grown *= 2;
+        }
+        if (HEADER_BYTES + 2 * grown > Integer.MAX_VALUE) {
+            disable("a snapshot of " + length + " bytes does not fit in a mapped file");
+            return false;
+        }
+        try {
+            this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 2 * grown);
+        } catch (IOException e) {
+            disable(e.getMessage());
+            return false;
+        }
+        this.halfBytes = (int) grown;
+        return true;
     }
 
-    // Overriding abstract method - POLYMORPHISM
-    @Override
-    public void playRound() throws InvalidBetException, InsufficientBalanceException {
-        System.out.println("\n" + "-".repeat(50));
-        displayBalance();
+    // Blanks the header so the next run cannot resume a stale snapshot, then stops journalling this session
+    private void disable(String reason) {
+        this.disabled = true;
+        this.map.putInt(0, 0);
+        this.map.force(0, HEADER_BYTES);
+        System.out.println("Session journal turned off, this session cannot be recovered after a crash: " + reason);
+    }
 
-        // Get and validate bet
-        currentBet = getBetAmount();
-        validateBet(currentBet);
+    // The half size the file was last laid out with, which is larger than configured once it has grown
+    private static int storedHalfBytes(FileChannel channel, int configured) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        if (channel.read(header, 0) < 16 || header.getInt(0) != MAGIC) {
+            return configured;
+        }
+        int stored = (int) header.getLong(8);
+        return stored > 0 && HEADER_BYTES + 2L * stored <= channel.size() ? stored : configured;
+    }
 
-        // Get number of mines
-        numberOfMines = getMineCount();
-        
-        // Board size = number of mines (3 mines = 3×3, 4 mines = 4×4, etc.)
-        int boardSize = numberOfMines;
+    // Replays the active half's valid records into the state; a blank file gives an ended session
+    private void recover() {
+        if (this.map.getInt(0) != MAGIC) {
+            this.map.putInt(0, MAGIC);
+            this.map.putLong(8, this.halfBytes);
+            this.half = 0;
+            this.epoch = 0;
+            return;
+        }
+        this.epoch = this.map.getLong(8) >>> 32;
+        this.half = (int) (this.epoch & 1);
+        ByteBuffer.wrap(this.epochBytes).putLong(this.epoch);
+        int offset = halfStart(this.half);
+        int end = offset + this.halfBytes;
+        while (offset + RECORD_OVERHEAD <= end) {
+            int bodyBytes = this.map.getInt(offset);
+            if (bodyBytes < 1 || offset + bodyBytes + 8 > end) {
+                break;
+            }
+            this.crc.reset();
+            this.crc.update(this.epochBytes);
+            this.crc.update(this.map.slice(offset + 4, bodyBytes));
+            if ((int) this.crc.getValue() != this.map.getInt(offset + 4 + bodyBytes)) {
+                break;
+            }
+            apply(this.map.slice(offset + 4, bodyBytes));
+            offset += bodyBytes + 8;
+        }
+    }
 
-        // Deduct bet from balance
-        player.deductBalance(currentBet);
+    private void apply(ByteBuffer record) {
+        switch (record.get()) {
+            case SNAPSHOT:
+                this.state.readSnapshot(record);
+                break;
+            case BET:
+                this.state.bet(record.getLong(), record.getLong());
+                break;
+            case ROUND:
+                this.state.round(record.getInt(), record.getInt(), record.get() != 0, record.getLong());
+                break;
+            case REVEAL:
+                int count = record.getInt();
+                int[] cells = new int[count];
+                for (int i = 0; i < count; i++) {
+                    cells[i] = record.getInt();
+                }
+                this.state.reveal(cells, count);
+                break;
+            case SETTLE:
+                this.state.settle(record.getLong());
+                break;
+            case END:
+                this.state.end();
+                break;
+            default:
+                break;
+        }
+    }
 
-        // Create board and place mines with loading animation
-        LoadingThread loadingThread = new LoadingThread("Placing mines");
-        loadingThread.start();
+    private int halfStart(int half) {
+        return HEADER_BYTES + half * this.halfBytes;
+    }
+}
 
+// WAL BENCHMARK - Game-thread cost per round of the session journal against the game log append
+class WalBenchmark {
+    // Usage: wal-bench [rounds]
+    public static void run(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
         try {
-            loadingThread.join(); // Wait for loading to complete
-        } catch (InterruptedException e) {
-            System.out.println("Loading was interrupted");
+            Path directory = Files.createTempDirectory("minestake-wal-bench");
+            Path logFile = directory.resolve("game_log.txt");
+            Path walFile = directory.resolve("session.wal");
+            try {
+                System.out.println("Per-round cost on the game thread over " + rounds + " rounds:");
+                benchLog(logFile, rounds);
+                try (SessionWal wal = new SessionWal(walFile, 1 << 20, 50, 10_000)) {
+                    wal.start(100_000);
+                    bench("session journal (batched force)", rounds, round -> playRound(wal, round));
+                    int forced = Math.min(rounds, 2_000);
+                    bench("session journal (force per round)", forced, round -> {
+                        playRound(wal, round);
+                        wal.forceNow();
+                    });
+                    wal.end();
+                }
+            } finally {
+                Files.deleteIfExists(logFile);
+                Files.deleteIfExists(walFile);
+                Files.deleteIfExists(directory);
+            }
+        } catch (IOException e) {
+            System.out.println("Benchmark failed: " + e.getMessage());
         }
+    }
 
-        board = new Board(boardSize, numberOfMines);
-        board.placeMines();
+    // What the game writes for one round: the stake, the board, two reveals and the cash-out
+    private static void playRound(SessionWal wal, int round) {
+        int[] cells = {round % 25, (round + 7) % 25};
+        wal.bet(1000, 99_000);
+        wal.round(5, 5, false, round);
+        wal.reveal(cells, 1);
+        wal.reveal(new int[] {cells[1]}, 1);
+        wal.settle(101_500);
+    }
 
-        // Start status update thread
-        Thread statusThread = new Thread(new StatusUpdateRunnable("Game Started!"));
-        statusThread.start();
+    // The existing per-round write: one entry handed to the group-commit log writer
+    private static void benchLog(Path logFile, int rounds) {
+        GameLogWriter writer = new GameLogWriter(logFile.toString(), LogDurability.FLUSH, 100, 4096);
+        bench("game log append", rounds,
+                round -> writer.append(new LogEntry(System.currentTimeMillis(), true, 1000, 1500, 100_500, round)));
+        long start = System.nanoTime();
+        writer.close();
+        System.out.println(String.format("  (log writer drained the rest in %.1f ms)", (System.nanoTime() - start) / 1e6));
+    }
 
-        try {
-            statusThread.join();
-        } catch (InterruptedException e) {
-            System.out.println("Status update interrupted");
+    private static void bench(String name, int rounds, java.util.function.IntConsumer round) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        for (int i = 0; i < Math.min(rounds, 10_000); i++) {
+            round.accept(i); // warm-up
         }
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            round.accept(i);
+            histogram.record(System.nanoTime() - start);
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.println(String.format("%-34s %9.0f rounds/sec  mean %8.2f us  p99 %8.2f us  max %9.2f us",
+                name, rounds / seconds, histogram.getMeanNanos() / 1e3, histogram.getPercentileNanos(0.99) / 1e3,
+                histogram.getMaxNanos() / 1e3));
+    }
+}
 
-        // Reset multiplier and safe tiles
-        multiplier = 1.0;
-        safeTilesRevealed = 0;
+// COMMAND READER - Big buffered byte reader that hands out input lines in place, without a String per line
+final class CommandReader {
+    private final InputStream in;
+    private byte[] buffer;
+    private int start;     // first byte of the next line
+    private int scan;      // bytes before this hold no newline
+    private int limit;     // end of the bytes read so far
+    private int lineStart;
+    private int lineEnd;
+    private boolean eof;
 
-        // Game loop
-        boolean gameActive = true;
-        boolean hitMine = false;
+    public CommandReader(InputStream in, int bufferBytes) {
+        this.in = in;
+        this.buffer = new byte[bufferBytes];
+    }
 
-        while (gameActive) {
-            board.displayBoard();
+    // Moves to the next line, without its line ending; false at the end of input. The line's bytes stay
+    // valid until the next call
+    public boolean nextLine() throws IOException {
+        while (true) {
+            for (int i = this.scan; i < this.limit; i++) {
+                if (this.buffer[i] == '\n') {
+                    setLine(i);
+                    this.start = i + 1;
+                    this.scan = i + 1;
+                    return true;
+                }
+            }
+            this.scan = this.limit;
+            if (this.eof) {
+                if (this.start == this.limit) {
+                    return false;
+                }
+                setLine(this.limit);
+                this.start = this.limit;
+                return true;
+            }
+            fill();
+        }
+    }
 
-            int[] coords = getTileCoordinates();
-            int row = coords[0] - 1;
-            int col = coords[1] - 1;
+    public byte[] getBuffer() {
+        return this.buffer;
+    }
 
-            if (board.isTileRevealed(row, col)) {
-                System.out.println("WARNING: This tile is already revealed. Try another one.");
-                continue;
-            }
+    public int getLineStart() {
+        return this.lineStart;
+    }
 
-            boolean safe = board.revealTile(row, col);
+    public int getLineEnd() {
+        return this.lineEnd;
+    }
 
-            if (safe) {
-                safeTilesRevealed++;
-                multiplier += 0.25;
-                System.out.println("\nDIAMOND Safe! Multiplier: " + String.format("%.2f", multiplier) + "x");
-                System.out.println("Potential Winnings: Rs." + String.format("%.2f", currentBet * multiplier));
-
-                System.out.print("\nCash out? (y/n): ");
-                String cashOutChoice = scanner.nextLine().trim().toLowerCase();
-
-                if (cashOutChoice.equals("y")) {
-                    double winnings = currentBet * multiplier;
-                    player.addBalance(winnings);
-                    System.out.println("\nCongratulations! You won Rs." + String.format("%.2f", winnings));
-                    logGame(true, winnings);
-                    gameActive = false;
-                }
+    private void setLine(int end) {
+        this.lineStart = this.start;
+        this.lineEnd = end > this.start && this.buffer[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    // Moves a partial line to the front, or grows the buffer when one line fills it
+    private void fill() throws IOException {
+        if (this.limit == this.buffer.length) {
+            if (this.start > 0) {
+                System.arraycopy(this.buffer, this.start, this.buffer, 0, this.limit - this.start);
+                this.limit -= this.start;
+                this.scan -= this.start;
+                this.start = 0;
             } else {
-                System.out.println("\nBOOM! Mine hit! You lost Rs." + String.format("%.2f", currentBet));
-                board.displayBoard();
-                hitMine = true;
-                logGame(false, 0);
-                gameActive = false;
+                this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
             }
         }
+        int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read < 0) {
+            this.eof = true;
+        } else {
+            this.limit += read;
+        }
+    }
+}
 
-        if (!hitMine && gameActive) {
-            System.out.println("\nRound ended.");
+// COMMAND TOKENIZER - Reads numbers and words from one input line in place; a bad token is a false return,
+// never a String or an exception
+final class CommandTokenizer {
+    private byte[] bytes = new byte[0];
+    private int position;
+    private int end;
+    private long value;
+
+    public void reset(byte[] bytes, int from, int to) {
+        this.bytes = bytes;
+        this.position = from;
+        this.end = to;
+    }
+
+    // The number read by the last successful next* call
+    public long getValue() {
+        return this.value;
+    }
+
+    // Only blanks are left on the line
+    public boolean atEnd() {
+        skipBlanks();
+        return this.position == this.end;
+    }
+
+    // Consumes the separator if it comes next
+    public boolean skip(char separator) {
+        skipBlanks();
+        if (this.position < this.end && this.bytes[this.position] == separator) {
+            this.position++;
+            return true;
         }
+        return false;
     }
 
-    // Helper method to get bet amount
-    private double getBetAmount() {
-        while (true) {
-            try {
-                System.out.print("Enter bet amount: Rs.");
-                String input = scanner.nextLine().trim();
-                double bet = Double.parseDouble(input);
-                return bet;
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a valid number.");
+    // Consumes a whole ASCII word if it comes next, ignoring case; word is given in lower case
+    public boolean word(String word) {
+        skipBlanks();
+        int length = word.length();
+        if (this.end - this.position < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((this.bytes[this.position + i] | 0x20) != word.charAt(i)) {
+                return false;
             }
         }
+        if (this.position + length < this.end && !isDelimiter(this.bytes[this.position + length])) {
+            return false;
+        }
+        this.position += length;
+        return true;
     }
 
-    // Helper method to validate bet - EXCEPTION HANDLING
-    private void validateBet(double bet) throws InvalidBetException, InsufficientBalanceException {
-        if (bet <= 0) {
-            throw new InvalidBetException("Bet amount must be greater than zero!");
+    // An optionally signed whole number of at most 18 digits
+    public boolean nextLong() {
+        skipBlanks();
+        int p = this.position;
+        boolean negative = p < this.end && this.bytes[p] == '-';
+        if (p < this.end && (this.bytes[p] == '-' || this.bytes[p] == '+')) {
+            p++;
         }
-        if (bet > player.getBalance()) {
-            throw new InsufficientBalanceException("Insufficient balance! You only have Rs." + player.getBalance());
+        int first = p;
+        long result = 0;
+        while (p < this.end && this.bytes[p] >= '0' && this.bytes[p] <= '9') {
+            if (p - first == 18) {
+                return false;
+            }
+            result = result * 10 + (this.bytes[p++] - '0');
         }
+        if (p == first || (p < this.end && !isDelimiter(this.bytes[p]))) {
+            return false;
+        }
+        this.value = negative ? -result : result;
+        this.position = p;
+        return true;
     }
 
-    // Helper method to get mine count
-    private int getMineCount() {
-        while (true) {
-            try {
-                System.out.print("Enter number of mines (2-10): ");
-                String input = scanner.nextLine().trim();
-                int mines = Integer.parseInt(input);
-                if (mines >= 2 && mines <= 10) {
-                    return mines;
-                } else {
-                    System.out.println("Please enter a number between 2 and 10.");
+    // A decimal such as 12, 12.5 or .5, scaled to a whole number with scale places (12.5 at scale 2 is 1250);
+    // further places round half up, or up when ceiling is set
+    public boolean nextDecimal(int scale, boolean ceiling) {
+        skipBlanks();
+        int p = this.position;
+        boolean negative = p < this.end && this.bytes[p] == '-';
+        if (p < this.end && (this.bytes[p] == '-' || this.bytes[p] == '+')) {
+            p++;
+        }
+        long result = 0;
+        int digits = 0;
+        int places = -1; // -1 before the decimal point
+        boolean roundUp = false;
+        for (; p < this.end; p++) {
+            byte b = this.bytes[p];
+            if (b >= '0' && b <= '9') {
+                if (places < 0) {
+                    if (digits == 12) {
+                        return false;
+                    }
+                    result = result * 10 + (b - '0');
+                } else if (places < scale) {
+                    result = result * 10 + (b - '0');
+                    places++;
+                } else if (ceiling) {
+                    roundUp |= b != '0';
+                } else if (places++ == scale) {
+                    roundUp = b >= '5';
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a valid number.");
+                digits++;
+            } else if (b == '.' && places < 0) {
+                places = 0;
+            } else if (isDelimiter(b)) {
+                break;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        for (int place = Math.max(places, 0); place < scale; place++) {
+            result *= 10;
+        }
+        if (roundUp) {
+            result++;
+        }
+        this.value = negative ? -result : result;
+        this.position = p;
+        return true;
+    }
+
+    // Up to 16 hex digits, as round seeds are printed
+    public boolean nextHex() {
+        skipBlanks();
+        int p = this.position;
+        long result = 0;
+        for (; p < this.end && !isDelimiter(this.bytes[p]); p++) {
+            int digit = Character.digit(this.bytes[p], 16);
+            if (digit < 0 || p - this.position == 16) {
+                return false;
             }
+            result = result << 4 | digit;
+        }
+        if (p == this.position) {
+            return false;
         }
+        this.value = result;
+        this.position = p;
+        return true;
     }
 
-    // Helper method to get tile coordinates
-    private int[] getTileCoordinates() {
-        int maxSize = board.getSize();
-        while (true) {
-            try {
-                System.out.print("Enter row and column (1-" + maxSize + "): ");
-                String input = scanner.nextLine().trim();
-                String[] parts = input.split(" ");
-                
-                if (parts.length != 2) {
-                    System.out.println("Please enter two numbers separated by space.");
-                    continue;
-                }
+    private void skipBlanks() {
+        while (this.position < this.end && (this.bytes[this.position] == ' ' || this.bytes[this.position] == '\t')) {
+            this.position++;
+        }
+    }
 
-                int row = Integer.parseInt(parts[0]);
-                int col = Integer.parseInt(parts[1]);
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\t' || b == ',' || b == '@';
+    }
+}
 
-                if (row >= 1 && row <= maxSize && col >= 1 && col <= maxSize) {
-                    return new int[]{row, col};
-                } else {
-                    System.out.println("Please enter numbers between 1 and " + maxSize + ".");
-                }
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter valid numbers.");
-            }
+// SEEDED BOARD SOURCE - Boards placed on the caller's thread from one seed stream, so a seed replays them all
+// Each mine count's board is reused round after round; large boards are sparse layouts from the next seed
+class SeededBoardSource implements BoardSource {
+    private final Board[] boards = new Board[BoardPool.MAX_MINES + 1];
+    private SplittableRandom seeds;
+
+    public SeededBoardSource(long seed) {
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    public void reseed(long seed) {
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    @Override
+    public Board take(int mines) {
+        Board board = this.boards[mines];
+        if (board == null) {
+            board = new Board(mines, mines);
+            this.boards[mines] = board;
+        } else {
+            board.reset();
         }
+        board.placeMinesWithRandomAlgorithm(this.seeds.nextLong());
+        return board;
+    }
+
+    @Override
+    public GameBoard takeLarge(int size, int mines) {
+        return SparseBoard.replay(size, mines, this.seeds.nextLong());
+    }
+
+    @Override
+    public void recycle(Board board) {
     }
+}
 
-    // FILE HANDLING - Write to log
-    private void logGame(boolean won, double winnings) {
-        FileWriter fw = null;
-        BufferedWriter bw = null;
+// BATCH GAME - Plays command scripts through the game rules without prompts, rendering or the event bus
+// A script holds the lines a player would type into `java MineStake` (bet, mines, "row col" picks including
+// "r c, r c @ x" batches, y/n answers), so the same file can be piped into either. The rules are MineStakeGame's
+// own RoundRules, including -Dminestake.largeBoards (a board size line before the mine count, sparse boards), and
+// only reading the lines differs: a line the game would reject is counted as invalid and the same question is
+// asked again; once a session ends (a "no" to playing again, or no balance left) the next line starts a new one
+// at Rs.1000.
+// Lines starting with '#' are comments, and "# seed <hex>" fixes the round seeds from there on.
+class BatchGame {
+    private static final int BET = 0;
+    private static final int SIZE = 1;
+    private static final int MINES = 2;
+    private static final int TILES = 3;
+    private static final int CASH_OUT = 4;
+    private static final int PLAY_AGAIN = 5;
+    private static final int SESSION_OVER = 6;
+    private static final long START_BALANCE_PAISE = 100_000L;
 
-        try {
-            fw = new FileWriter("game_log.txt", true);
-            bw = new BufferedWriter(fw);
+    private final Player player = new Player("Batch", 1000.0);
+    private final SeededBoardSource boards;
+    private final CommandTokenizer tokenizer = new CommandTokenizer();
+    private final GameLogWriter logWriter;
+    private long seed;
+    private int state = SESSION_OVER;
+    private GameBoard board;
+    private int boardSize;
+    private long betPaise;
+    private long multiplier;
+    private PayoutProgress payout;
+    private int[] picks = new int[8];
+    private int pickCount;
+    private long pickTarget;
 
-            String timestamp = new Date().toString();
-            String result = won ? "WIN" : "LOSS";
-            String logEntry = String.format("%s | %s | Bet: Rs.%.2f | Winnings: Rs.%.2f | Balance: Rs.%.2f%n",
-                    timestamp, result, currentBet, winnings, player.getBalance());
+    private long lines;
+    private long invalidLines;
+    private long sessions;
+    private long rounds;
+    private long wins;
+    private long moves;
+    private long betTotalPaise;
+    private long paidTotalPaise;
+
+    public BatchGame(long seed, GameLogWriter logWriter) {
+        this.seed = seed;
+        this.boards = new SeededBoardSource(seed);
+        this.logWriter = logWriter;
+    }
 
-            bw.write(logEntry);
+    // Usage: batch [file|-] [--seed <hex>] [--log]
+    public static void run(String[] args) {
+        String file = "-";
+        long seed = RngService.shared().nextRoundSeed();
+        boolean log = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = RngService.parseSeed(args[++i]);
+            } else if (args[i].equals("--log")) {
+                log = true;
+            } else {
+                file = args[i];
+            }
+        }
 
+        GameLogWriter logWriter = log ? GameLogWriter.fromSystemProperties("game_log.txt") : null;
+        BatchGame game = new BatchGame(seed, logWriter);
+        long start = System.nanoTime();
+        try (InputStream in = file.equals("-") ? new FileInputStream(FileDescriptor.in)
+                : Files.newInputStream(Paths.get(file))) {
+            CommandReader reader = new CommandReader(in, 1 << 20);
+            while (reader.nextLine()) {
+                game.handle(reader.getBuffer(), reader.getLineStart(), reader.getLineEnd());
+            }
         } catch (IOException e) {
-            System.out.println("Error writing to log file: " + e.getMessage());
+            System.out.println("Batch stopped: " + e.getMessage());
         } finally {
-            try {
-                if (bw != null) bw.close();
-                if (fw != null) fw.close();
-            } catch (IOException e) {
-                System.out.println("Error closing file: " + e.getMessage());
+            if (logWriter != null) {
+                logWriter.close();
             }
         }
+        game.printSummary((System.nanoTime() - start) / 1e9);
     }
 
-    // Implementing interface method
-    @Override
-    public void endGame() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("              GAME SUMMARY");
-        System.out.println("=".repeat(50));
-        System.out.println("Final Balance: Rs." + String.format("%.2f", player.getBalance()));
-        System.out.println("\nLast 5 Game Records:");
-        displayLastGames(5);
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("      Thanks for playing MineStake!");
-        System.out.println("=".repeat(50));
-    }
-
-    // FILE HANDLING - Read from log
-    private void displayLastGames(int count) {
-        FileReader fr = null;
-        BufferedReader br = null;
+    // Usage: batch-script [rounds] [mines] [seed] [size] - writes a script to stdout that plays exactly that many
+    // rounds under `batch --seed <seed>` (which its first line also sets): bet Rs.10, pick hidden tiles one at
+    // a time, and cash out after two diamonds; size is only asked for with -Dminestake.largeBoards
+    public static void writeScript(String[] args) {
+        long roundCount = args.length > 0 ? Long.parseLong(args[0]) : 100_000L;
+        int mines = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long seed = args.length > 2 ? RngService.parseSeed(args[2]) : RngService.shared().nextRoundSeed();
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 100;
 
-        try {
-            File file = new File("game_log.txt");
-            if (!file.exists()) {
-                System.out.println("No game history found.");
-                return;
+        // The script is checked against a game of its own as it is written, so it never drifts off the prompts
+        BatchGame game = new BatchGame(seed, null);
+        SplittableRandom picks = new SplittableRandom(seed);
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false);
+        feed(game, out, "# seed " + RngService.formatSeed(seed));
+        while (game.rounds < roundCount) {
+            switch (game.state) {
+                case SESSION_OVER:
+                    feed(game, out, "10");
+                    break;
+                case BET:
+                    feed(game, out, PayoutTable.formatHundredths(Math.min(1000, game.player.getBalancePaise())));
+                    break;
+                case SIZE:
+                    feed(game, out, Integer.toString(size));
+                    break;
+                case MINES:
+                    feed(game, out, Integer.toString(mines));
+                    break;
+                case TILES:
+                    int cell = hiddenCell(game.board, picks);
+                    feed(game, out, (cell / game.board.getSize() + 1) + " " + (cell % game.board.getSize() + 1));
+                    break;
+                case CASH_OUT:
+                    feed(game, out, game.payout.getSafeTiles() >= 2 ? "y" : "n");
+                    break;
+                default:
+                    feed(game, out, "y");
+                    break;
             }
+        }
+        if (game.state == PLAY_AGAIN) {
+            feed(game, out, "n");
+        }
+        out.flush();
+    }
+
+    // Sparse boards are mostly hidden, so a few random draws find a tile faster than counting them
+    private static int hiddenCell(GameBoard board, SplittableRandom picks) {
+        if (board instanceof Board) {
+            Board dense = (Board) board;
+            return dense.selectHiddenCell(picks.nextInt(dense.countHiddenTiles()));
+        }
+        int cell;
+        do {
+            cell = picks.nextInt(board.getCellCount());
+        } while (board.getCellState(cell) != Board.CELL_HIDDEN);
+        return cell;
+    }
 
-            fr = new FileReader(file);
-            br = new BufferedReader(fr);
+    private static void feed(BatchGame game, PrintStream out, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        game.handle(bytes, 0, bytes.length);
+        out.println(line);
+    }
 
-            // Read all lines
-            ArrayList<String> lines = new ArrayList<>();
-            String line;
-            while ((line = br.readLine()) != null) {
-                lines.add(line);
+    // One script line, answered as the question the game is currently asking
+    public void handle(byte[] bytes, int from, int to) {
+        this.lines++;
+        this.tokenizer.reset(bytes, from, to);
+        if (this.tokenizer.skip('#')) {
+            if (this.tokenizer.word("seed") && this.tokenizer.nextHex()) {
+                this.seed = this.tokenizer.getValue();
+                this.boards.reseed(this.seed);
             }
+            return;
+        }
+        if (this.state == SESSION_OVER) {
+            this.player.setBalancePaise(START_BALANCE_PAISE);
+            this.sessions++;
+            this.state = BET;
+        }
+
+        boolean valid;
+        switch (this.state) {
+            case BET:
+                valid = placeBet();
+                break;
+            case SIZE:
+                valid = chooseSize();
+                break;
+            case MINES:
+                valid = deal();
+                break;
+            case TILES:
+                valid = reveal();
+                break;
+            case CASH_OUT:
+                if (this.tokenizer.word("y") && this.tokenizer.atEnd()) {
+                    cashOut();
+                } else {
+                    this.state = TILES;
+                }
+                valid = true;
+                break;
+            default:
+                this.state = this.tokenizer.word("y") && this.tokenizer.atEnd() ? BET : SESSION_OVER;
+                valid = true;
+                break;
+        }
+        if (!valid) {
+            this.invalidLines++;
+        }
+    }
+
+    private boolean placeBet() {
+        if (!this.tokenizer.nextDecimal(2, false) || !this.tokenizer.atEnd()) {
+            return false;
+        }
+        long bet = this.tokenizer.getValue();
+        try {
+            RoundRules.reserveBet(this.player, bet);
+        } catch (InvalidBetException | InsufficientBalanceException e) {
+            return false;
+        }
+        this.betPaise = bet;
+        this.state = RoundRules.LARGE_BOARDS ? SIZE : MINES;
+        return true;
+    }
+
+    private boolean chooseSize() {
+        if (!this.tokenizer.nextLong() || !this.tokenizer.atEnd()) {
+            return false;
+        }
+        long size = this.tokenizer.getValue();
+        if (!RoundRules.isBoardSize(size)) {
+            return false;
+        }
+        this.boardSize = (int) size;
+        this.state = MINES;
+        return true;
+    }
+
+    // boardSize stays 0 unless large boards asked for it
+    private boolean deal() {
+        if (!this.tokenizer.nextLong() || !this.tokenizer.atEnd()) {
+            return false;
+        }
+        long mines = this.tokenizer.getValue();
+        if (!RoundRules.isMineCount(mines, this.boardSize)) {
+            return false;
+        }
+        this.board = RoundRules.deal(this.boards, RoundRules.boardSize(this.boardSize, (int) mines), (int) mines);
+        this.multiplier = PayoutTable.ONE;
+        this.payout = PayoutTable.shared().progress(board.getSize(), board.getMineCount());
+        this.state = TILES;
+        return true;
+    }
 
-            // Display last 'count' lines
-            int start = Math.max(0, lines.size() - count);
-            for (int i = start; i < lines.size(); i++) {
-                System.out.println((i - start + 1) + ". " + lines.get(i));
+    private boolean reveal() {
+        if (!parsePicks()) {
+            return false;
+        }
+        RevealResult result = RevealResult.reveal(this.board, this.picks, this.pickCount, this.payout,
+                this.pickTarget);
+        this.moves += result.getRevealed();
+        if (result.isMineHit()) {
+            endRound(false, 0);
+            return true;
+        }
+        this.multiplier = result.getMultiplier();
+        if (result.isCashOut()) {
+            cashOut();
+        } else {
+            this.state = CASH_OUT;
+        }
+        return true;
+    }
+
+    // "row col" pairs separated by commas, optionally followed by "@ <multiplier>"; every tile hidden and distinct
+    private boolean parsePicks() {
+        int size = this.board.getSize();
+        this.pickCount = 0;
+        this.pickTarget = 0;
+        while (true) {
+            if (!this.tokenizer.nextLong()) {
+                return false;
+            }
+            long row = this.tokenizer.getValue();
+            if (!this.tokenizer.nextLong()) {
+                return false;
             }
+            int cell = RoundRules.cellAt(size, row, this.tokenizer.getValue());
+            if (cell < 0 || this.pickCount == RoundRules.MAX_PICKS_PER_LINE) {
+                return false;
+            }
+            if (this.pickCount == this.picks.length) {
+                this.picks = Arrays.copyOf(this.picks, this.pickCount * 2);
+            }
+            this.picks[this.pickCount++] = cell;
 
-        } catch (IOException e) {
-            System.out.println("Error reading log file: " + e.getMessage());
-        } finally {
-            try {
-                if (br != null) br.close();
-                if (fr != null) fr.close();
-            } catch (IOException e) {
-                System.out.println("Error closing file: " + e.getMessage());
+            if (this.tokenizer.skip(',')) {
+                continue;
             }
+            if (this.tokenizer.skip('@')) {
+                if (!this.tokenizer.nextDecimal(4, true) || this.tokenizer.getValue() <= 0) {
+                    return false;
+                }
+                this.pickTarget = this.tokenizer.getValue();
+            }
+            return this.tokenizer.atEnd() && RoundRules.arePicksHidden(this.board, this.picks, this.pickCount);
+        }
+    }
+
+    private void cashOut() {
+        long winnings = RoundRules.cashOut(this.player, this.betPaise, this.multiplier);
+        this.wins++;
+        this.paidTotalPaise += winnings;
+        endRound(true, winnings);
+    }
+
+    private void endRound(boolean won, long winningsPaise) {
+        this.rounds++;
+        this.betTotalPaise += this.betPaise;
+        if (this.logWriter != null) {
+            this.logWriter.append(new LogEntry(System.currentTimeMillis(), won, this.betPaise, winningsPaise,
+                    this.player.getBalancePaise(), this.board.getRoundSeed()));
         }
+        this.state = RoundRules.canPlayAgain(this.player) ? PLAY_AGAIN : SESSION_OVER;
+    }
+
+    private void printSummary(double seconds) {
+        System.out.println("Batch: " + this.lines + " lines (" + this.invalidLines + " invalid), "
+                + this.sessions + " sessions, " + this.rounds + " rounds, seed " + RngService.formatSeed(this.seed));
+        System.out.println(String.format("Rounds won: %d (%.2f%%), tiles revealed: %d",
+                this.wins, this.rounds == 0 ? 0.0 : 100.0 * this.wins / this.rounds, this.moves));
+        System.out.println("Staked: Rs." + PayoutTable.formatHundredths(this.betTotalPaise) + ", paid: Rs."
+                + PayoutTable.formatHundredths(this.paidTotalPaise) + String.format(", RTP %.2f%%",
+                this.betTotalPaise == 0 ? 0.0 : 100.0 * this.paidTotalPaise / this.betTotalPaise));
+        System.out.println("Last session balance: Rs." + PayoutTable.formatHundredths(this.player.getBalancePaise()));
+        System.out.println(String.format("%.3f s: %.0f lines/sec, %.0f tiles revealed/sec",
+                seconds, this.lines / seconds, this.moves / seconds));
     }
 }
 
 // MAIN CLASS
 public class MineStake {
     public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "play";
+        String[] modeArgs = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args;
+
+        switch (mode) {
+            case "simulate":
+                RoundSimulator.run(modeArgs);
+                return;
+            case "bench":
+                PlacementBenchmark.run(modeArgs);
+                return;
+            case "convert-log":
+                LogConverter.convert(modeArgs);
+                return;
+            case "log-range":
+                LogConverter.printRange(modeArgs);
+                return;
+            case "server":
+                GameServer.run(modeArgs);
+                return;
+            case "loadgen":
+                LoadGenerator.run(modeArgs);
+                return;
+            case "ledger-bench":
+                LedgerBenchmark.run(modeArgs);
+                return;
+            case "replay-board":
+                BoardReplay.run(modeArgs);
+                return;
+            case "replay-journal":
+                JournalReplayer.run(modeArgs);
+                return;
+            case "metrics-bench":
+                MetricsBenchmark.run(modeArgs);
+                return;
+            case "analyze-log":
+                LogAnalytics.run(modeArgs);
+                return;
+            case "wal-bench":
+                WalBenchmark.run(modeArgs);
+                return;
+            case "batch":
+                BatchGame.run(modeArgs);
+                return;
+            case "batch-script":
+                BatchGame.writeScript(modeArgs);
+                return;
+            case "leaderboard-bench":
+                LeaderboardBenchmark.run(modeArgs);
+                return;
+            default:
+                break;
+        }
+
         // Create player with default constructor
         Player player = new Player();
 